@@ -18,9 +18,10 @@ echo "  3. Heavy test (20 threads, 5 minutes)"
 echo "  4. Delay test (5 threads, 5 minutes, with 70s delays)"
 echo "  5. Custom test (specify parameters)"
 echo "  6. Shell-based quick test (30 seconds)"
+echo "  7. Scenario file (operation mix, phases and SLOs from scenarios/)"
 echo ""
 
-read -p "Select test type (1-6): " choice
+read -p "Select test type (1-7): " choice
 
 case $choice in
     1)
@@ -68,6 +69,18 @@ case $choice in
         echo -e "${YELLOW}Running shell-based quick test...${NC}"
         ./test-nlb-quick.sh
         ;;
+    7)
+        ls scenarios/*.properties
+        read -p "Scenario file (default: scenarios/smoke.properties): " scenario
+        scenario=${scenario:-scenarios/smoke.properties}
+        read -p "Server host (default: localhost): " host
+        host=${host:-localhost}
+
+        echo -e "${YELLOW}Running scenario $scenario...${NC}"
+        java --add-opens=java.base/java.nio=org.apache.arrow.memory.core,ALL-UNNAMED \
+             -cp "target/classes:$(mvn dependency:build-classpath -Dmdep.outputFile=/dev/stdout -q)" \
+             org.example.NLBLoadTester --host $host --scenario $scenario
+        ;;
     *)
         echo "Invalid choice. Exiting."
         exit 1
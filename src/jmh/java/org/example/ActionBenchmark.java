@@ -0,0 +1,63 @@
+package org.example;
+
+import org.apache.arrow.flight.Action;
+import org.apache.arrow.flight.Result;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * doAction("echo") latency as the payload grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = InProcessFlightServer.ADD_OPENS)
+public class ActionBenchmark {
+
+  @Param({"16", "1024", "65536", "1048576"})
+  public int payloadBytes;
+
+  private InProcessFlightServer flight;
+  private Action action;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    flight = new InProcessFlightServer(Map.of());
+    byte[] payload = new byte[payloadBytes];
+    Arrays.fill(payload, (byte) 'x');
+    action = new Action("echo", payload);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    flight.close();
+  }
+
+  @Benchmark
+  public int echo() {
+    Iterator<Result> results = flight.client.doAction(action);
+    int bytes = 0;
+    while (results.hasNext()) {
+      bytes += results.next().getBody().length;
+    }
+    return bytes;
+  }
+}
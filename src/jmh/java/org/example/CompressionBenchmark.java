@@ -0,0 +1,175 @@
+package org.example;
+
+import io.grpc.Codec;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.WriteChannel;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of compressing (server) and decompressing (client) one serialized record
+ * batch with the gRPC message codecs of {@link BatchCompression}, per codec and data
+ * shape; the compressed size is printed once per trial. Together they give
+ * the CPU-vs-bytes trade-off: compression pays off when the link moves fewer bytes per
+ * second than the codec handles.
+ *
+ * Data shapes: {@code sequence} is the sample flight's single int column; {@code table}
+ * is a more realistic row of id, skewed category, price in cents and a short label;
+ * {@code random} is incompressible noise in the same columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = InProcessFlightServer.ADD_OPENS)
+public class CompressionBenchmark {
+
+  // "none" is the cost of copying the message alone. lz4 (commons-compress, pure Java)
+  // can take seconds per batch on repetitive data; add it with -p codec=none,lz4,zstd
+  @Param({"none", "zstd"})
+  public String codec;
+
+  @Param({"sequence", "table", "random"})
+  public String data;
+
+  @Param({"65536"})
+  public int batchRows;
+
+  private static final String[] LABELS = {"ok", "pending", "failed", "retry", "cancelled", "expired"};
+
+  private BufferAllocator allocator;
+  private Codec grpcCodec;
+  private byte[] message; // the record batch as IPC bytes, as a DoGet sends it
+  private byte[] compressed;
+  private byte[] buffer;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    allocator = new RootAllocator();
+    try (VectorSchemaRoot batch = "sequence".equals(data) ? sequenceBatch() : tableBatch("random".equals(data));
+         ArrowRecordBatch recordBatch = new VectorUnloader(batch).getRecordBatch()) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      MessageSerializer.serialize(new WriteChannel(Channels.newChannel(out)), recordBatch);
+      message = out.toByteArray();
+    }
+    grpcCodec = BatchCompression.codec(codec);
+    compressed = compress(message);
+    buffer = new byte[64 * 1024];
+
+    System.out.printf("%n🗜️ %s/%s: %,d bytes -> %,d bytes (%.2fx)%n",
+        codec, data, message.length, compressed.length, message.length / (double) compressed.length);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    allocator.close();
+  }
+
+  @Benchmark
+  public long compress() throws IOException {
+    return compress(message).length;
+  }
+
+  @Benchmark
+  public long decompress() throws IOException {
+    long total = 0;
+    try (InputStream in = grpcCodec.decompress(new ByteArrayInputStream(compressed))) {
+      for (int n; (n = in.read(buffer)) > 0; ) {
+        total += n;
+      }
+    }
+    return total;
+  }
+
+  private byte[] compress(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+    try (OutputStream compressing = grpcCodec.compress(out)) {
+      compressing.write(bytes);
+    }
+    return out.toByteArray();
+  }
+
+  private VectorSchemaRoot sequenceBatch() {
+    Schema schema = new Schema(Arrays.asList(
+        new Field("value", FieldType.nullable(new ArrowType.Int(32, true)), null)));
+    VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+    IntVector value = (IntVector) root.getVector(0);
+    value.allocateNew(batchRows);
+    for (int i = 0; i < batchRows; i++) {
+      value.set(i, i * 10);
+    }
+    root.setRowCount(batchRows);
+    return root;
+  }
+
+  private VectorSchemaRoot tableBatch(boolean random) {
+    Schema schema = new Schema(Arrays.asList(
+        new Field("id", FieldType.nullable(new ArrowType.Int(64, true)), null),
+        new Field("category", FieldType.nullable(new ArrowType.Int(32, true)), null),
+        new Field("price", FieldType.nullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)), null),
+        new Field("status", FieldType.nullable(new ArrowType.Utf8()), null)));
+    VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+    BigIntVector id = (BigIntVector) root.getVector("id");
+    IntVector category = (IntVector) root.getVector("category");
+    Float8Vector price = (Float8Vector) root.getVector("price");
+    VarCharVector status = (VarCharVector) root.getVector("status");
+    root.allocateNew();
+
+    Random rnd = new Random(42);
+    for (int i = 0; i < batchRows; i++) {
+      if (random) {
+        id.setSafe(i, rnd.nextLong());
+        category.setSafe(i, rnd.nextInt());
+        price.setSafe(i, rnd.nextDouble());
+        byte[] label = new byte[4 + rnd.nextInt(6)];
+        rnd.nextBytes(label);
+        status.setSafe(i, label);
+      } else {
+        id.setSafe(i, 1_000_000L + i);
+        // Skewed: a few categories hold most rows
+        category.setSafe(i, (int) Math.floor(Math.pow(rnd.nextDouble(), 4) * 100));
+        price.setSafe(i, Math.round(rnd.nextDouble() * 50_000) / 100.0);
+        status.setSafe(i, LABELS[rnd.nextInt(10) < 8 ? 0 : rnd.nextInt(LABELS.length)].getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    root.setRowCount(batchRows);
+    return root;
+  }
+}
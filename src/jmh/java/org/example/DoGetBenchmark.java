@@ -0,0 +1,71 @@
+package org.example;
+
+import org.apache.arrow.flight.FlightStream;
+import org.apache.arrow.flight.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DoGet throughput across batch sizes: one operation streams the whole result,
+ * so rows/s = ops/s * rows. {@code cached} serves the result from the result cache
+ * instead of generating every batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = InProcessFlightServer.ADD_OPENS)
+public class DoGetBenchmark {
+
+  @Param({"1024", "16384", "65536", "262144", "1048576"})
+  public int batchRows;
+
+  @Param({"4194304"})
+  public long rows;
+
+  @Param({"false", "true"})
+  public boolean cached;
+
+  private InProcessFlightServer flight;
+  private Ticket ticket;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    flight = new InProcessFlightServer(Map.of(
+        "flight.cache.maxBytes", cached ? String.valueOf(256L << 20) : "0",
+        "flight.cache.maxEntryBytes", String.valueOf(64L << 20)));
+    ticket = new Ticket(("sample?rows=" + rows + "&batch=" + batchRows).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    flight.close();
+  }
+
+  @Benchmark
+  public long doGet() throws Exception {
+    long received = 0;
+    try (FlightStream stream = flight.client.getStream(ticket)) {
+      while (stream.next()) {
+        received += stream.getRoot().getRowCount();
+      }
+    }
+    return received;
+  }
+}
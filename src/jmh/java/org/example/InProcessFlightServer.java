@@ -0,0 +1,43 @@
+package org.example;
+
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A {@link Main.SampleFlightProducer} served on an ephemeral localhost port, plus a
+ * client connected to it. Shared by the benchmarks so they measure the real gRPC path.
+ */
+final class InProcessFlightServer implements AutoCloseable {
+  // Forked benchmark JVMs need the same module opening as the server scripts
+  static final String ADD_OPENS = "--add-opens=java.base/java.nio=org.apache.arrow.memory.core,ALL-UNNAMED";
+
+  final BufferAllocator serverAllocator = new RootAllocator();
+  final BufferAllocator clientAllocator = new RootAllocator();
+  final Main.SampleFlightProducer producer;
+  final FlightServer server;
+  final FlightClient client;
+
+  InProcessFlightServer(Map<String, String> config) throws IOException {
+    producer = new Main.SampleFlightProducer(serverAllocator, ServerConfig.of(config));
+    server = FlightServer.builder(serverAllocator, Location.forGrpcInsecure("localhost", 0), producer)
+        .middleware(MetricsMiddleware.KEY, new MetricsMiddleware.Factory(producer.metrics()))
+        .build()
+        .start();
+    client = FlightClient.builder(clientAllocator, Location.forGrpcInsecure("localhost", server.getPort())).build();
+  }
+
+  @Override
+  public void close() throws Exception {
+    client.close();
+    server.close();
+    producer.close();
+    clientAllocator.close();
+    serverAllocator.close();
+  }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+import org.apache.arrow.flight.Criteria;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.PollInfo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency (with percentiles) of the unary metadata calls: getFlightInfo,
+ * listFlights, and pollFlightInfo on a query that is still running.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = InProcessFlightServer.ADD_OPENS)
+public class MetadataBenchmark {
+  private static final FlightDescriptor SAMPLE = FlightDescriptor.path("sample");
+
+  private InProcessFlightServer flight;
+  private FlightDescriptor runningQuery;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    flight = new InProcessFlightServer(Map.of());
+    // A two-hour query stays running for the whole benchmark
+    runningQuery = flight.client.pollInfo(FlightDescriptor.path("ultra-long-query")).getFlightDescriptor()
+        .orElseThrow(() -> new IllegalStateException("ultra-long-query did not return a poll descriptor"));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    flight.close();
+  }
+
+  @Benchmark
+  public FlightInfo getFlightInfo() {
+    return flight.client.getInfo(SAMPLE);
+  }
+
+  @Benchmark
+  public void listFlights(Blackhole blackhole) {
+    for (FlightInfo info : flight.client.listFlights(Criteria.ALL)) {
+      blackhole.consume(info);
+    }
+  }
+
+  @Benchmark
+  public PollInfo pollFlightInfo() {
+    return flight.client.pollInfo(runningQuery);
+  }
+}
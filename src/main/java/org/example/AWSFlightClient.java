@@ -3,9 +3,6 @@ package org.example;
 import org.apache.arrow.flight.*;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
-import org.apache.arrow.vector.IntVector;
-import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.types.pojo.Schema;
 
 /**
  * Flight client specifically configured for AWS deployment
@@ -53,7 +50,7 @@ AWSFlightClient {
         System.out.println("\n📋 Listing flights:");
         client.listFlights(new Criteria(new byte[0])).forEach(info -> {
           System.out.println("  Found flight: " + info.getDescriptor());
-          System.out.println("  Schema: " + info.getSchema());
+          System.out.println("  Schema: " + info.getSchemaOptional().orElse(null));
         });
 
         // Get flight info
@@ -72,25 +69,8 @@ AWSFlightClient {
         }
 
         long startTime = System.currentTimeMillis();
-        Ticket ticket = info.getEndpoints().get(0).getTicket();
-        try (FlightStream stream = client.getStream(ticket)) {
-          Schema schema = stream.getSchema();
-          System.out.println("  Stream schema: " + schema);
-
-          while (stream.next()) {
-            VectorSchemaRoot root = stream.getRoot();
-            IntVector valueVector = (IntVector) root.getVector("value");
-
-            System.out.println("  Received batch with " + root.getRowCount() + " rows:");
-            for (int i = 0; i < root.getRowCount(); i++) {
-              if (valueVector.isNull(i)) {
-                System.out.println("    Row " + i + ": null");
-              } else {
-                System.out.println("    Row " + i + ": " + valueVector.get(i));
-              }
-            }
-          }
-        }
+        System.out.println("  Stream schema: " + info.getSchemaOptional().orElse(null));
+        ParallelFetcher.fetchAndPrint(client, info, "  ");
 
         long endTime = System.currentTimeMillis();
         long duration = endTime - startTime;
@@ -0,0 +1,177 @@
+package org.example;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallOption;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.CancelFlightInfoRequest;
+import org.apache.arrow.flight.CancelStatus;
+import org.apache.arrow.flight.FlightCallHeaders;
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.flight.PollInfo;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Polls a long-running query until it completes, spacing polls by the server's hints.
+ *
+ * The delay before each poll is, in order of preference:
+ * <ul>
+ *   <li>none, when long polling ({@link #longPollMs}): the server holds the call instead,
+ *       but polls still start at least {@code minDelayMs} apart</li>
+ *   <li>the server's suggested next-poll delay ({@link PollHints})</li>
+ *   <li>exponential backoff from {@code minDelayMs}, never past the estimated completion</li>
+ * </ul>
+ * jittered by ±10% so many clients behind one NLB don't poll in lockstep, then clamped
+ * to [minDelayMs, maxDelayMs] and to half the time left before the poll descriptor
+ * expires.
+ *
+ * {@link #cancel} stops the poll loop from another thread and cancels the query on the
+ * server, so it stops running and frees its resources instead of finishing for nobody.
+ */
+final class AdaptivePoller {
+  /** Called after every poll response, including the last one. */
+  interface Listener {
+    void onPoll(int pollNumber, PollInfo info, long nextDelayMs);
+  }
+
+  private final FlightClient client;
+  private long minDelayMs = 500;
+  private long maxDelayMs = 30000;
+  private long longPollMs = 0;
+  private CallOption[] options = new CallOption[0];
+  private int pollCount;
+  private volatile boolean cancelled;
+  private volatile FlightInfo lastInfo; // of the running query, identifies it to CancelFlightInfo
+
+  AdaptivePoller(FlightClient client) {
+    this.client = client;
+  }
+
+  AdaptivePoller minDelayMs(long minDelayMs) {
+    this.minDelayMs = minDelayMs;
+    return this;
+  }
+
+  AdaptivePoller maxDelayMs(long maxDelayMs) {
+    this.maxDelayMs = maxDelayMs;
+    return this;
+  }
+
+  /** Ask the server to hold each poll up to this long (see {@link LongPollMiddleware}). */
+  AdaptivePoller longPollMs(long longPollMs) {
+    this.longPollMs = longPollMs;
+    if (longPollMs > 0) {
+      CallHeaders headers = new FlightCallHeaders();
+      headers.insert(LongPollMiddleware.WAIT_HEADER, Long.toString(longPollMs));
+      options = new CallOption[] {new HeaderCallOption(headers)};
+    } else {
+      options = new CallOption[0];
+    }
+    return this;
+  }
+
+  /** Polls made by the last {@link #run} call, including the one that started the query. */
+  int pollCount() {
+    return pollCount;
+  }
+
+  /**
+   * Starts (or resumes) the query behind {@code descriptor} and polls until the server
+   * stops returning a poll descriptor.
+   *
+   * @return the last PollInfo, whose FlightInfo holds the result endpoints
+   */
+  PollInfo run(FlightDescriptor descriptor, Listener listener) throws InterruptedException {
+    pollCount = 0;
+    cancelled = false;
+    lastInfo = null;
+    long delayMs = 0;
+    while (true) {
+      long pollStart = System.currentTimeMillis();
+      PollInfo info = client.pollInfo(descriptor, options);
+      pollCount++;
+
+      FlightDescriptor next = info.getFlightDescriptor().orElse(null);
+      if (next == null) {
+        listener.onPoll(pollCount, info, -1);
+        return info;
+      }
+      lastInfo = info.getFlightInfo();
+      if (cancelled) {
+        // cancel() ran before the query was known; cancel it now
+        cancelOnServer(lastInfo);
+        throw cancelledException();
+      }
+      delayMs = nextDelay(info, delayMs, System.currentTimeMillis() - pollStart);
+      listener.onPoll(pollCount, info, delayMs);
+      if (delayMs > 0) {
+        synchronized (this) {
+          long wakeAt = System.currentTimeMillis() + delayMs;
+          for (long left = delayMs; left > 0 && !cancelled; left = wakeAt - System.currentTimeMillis()) {
+            wait(left);
+          }
+        }
+      }
+      if (cancelled) {
+        throw cancelledException();
+      }
+      descriptor = next;
+    }
+  }
+
+  /**
+   * Cancels the query {@link #run} is following, from any thread: the server stops it
+   * and run throws CANCELLED (a long poll in progress returns as soon as the server
+   * drops the query).
+   *
+   * @return the server's answer, or null if the query has not been started yet; it is
+   *         then cancelled as soon as its first poll returns
+   */
+  CancelStatus cancel() {
+    // Tell the server first: once run returns, the caller may close the client
+    FlightInfo info = lastInfo;
+    CancelStatus status = info == null ? null : cancelOnServer(info);
+    synchronized (this) {
+      cancelled = true;
+      notifyAll();
+    }
+    return status;
+  }
+
+  private CancelStatus cancelOnServer(FlightInfo info) {
+    return client.cancelFlightInfo(new CancelFlightInfoRequest(info)).getStatus();
+  }
+
+  private static RuntimeException cancelledException() {
+    return CallStatus.CANCELLED.withDescription("Query cancelled by the client").toRuntimeException();
+  }
+
+  private long nextDelay(PollInfo info, long previousDelayMs, long callMs) {
+    long now = System.currentTimeMillis();
+    FlightInfo flightInfo = info.getFlightInfo();
+    PollHints hints = flightInfo == null ? null : PollHints.fromAppMetadata(flightInfo.getAppMetadata());
+
+    long delay;
+    if (longPollMs > 0) {
+      // The call itself did the waiting; only guard against a server that ignores the header
+      return Math.max(0, minDelayMs - callMs);
+    } else if (hints != null && hints.nextPollDelayMs >= 0) {
+      delay = hints.nextPollDelayMs;
+    } else {
+      delay = previousDelayMs <= 0 ? minDelayMs : previousDelayMs * 2;
+      if (hints != null && hints.estimatedCompletionMillis > now) {
+        delay = Math.min(delay, hints.estimatedCompletionMillis - now);
+      }
+    }
+    // Jitter first, so the bounds below hold for the delay actually used
+    delay += (long) (delay * 0.1 * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+    delay = Math.max(minDelayMs, Math.min(maxDelayMs, delay));
+    if (info.getExpirationTime().isPresent()) {
+      delay = Math.min(delay, Math.max(0, (info.getExpirationTime().get().toEpochMilli() - now) / 2));
+    }
+    return delay;
+  }
+}
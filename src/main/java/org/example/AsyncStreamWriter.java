@@ -0,0 +1,147 @@
+package org.example;
+
+import org.apache.arrow.flight.FlightProducer.ServerStreamListener;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Drives a DoGet stream without holding a thread.
+ *
+ * An optional start delay is a timer on a shared scheduler rather than a sleep.
+ * Batches are only written while the listener is ready; once gRPC's outbound buffer
+ * fills up, writing resumes from the listener's onReady callback. A client
+ * cancellation stops the timer and releases the batch source (and its vectors)
+ * straight away instead of when the next write fails.
+ */
+final class AsyncStreamWriter {
+
+  /**
+   * Produces the batches of one stream into a single root.
+   */
+  interface BatchSource extends AutoCloseable {
+    VectorSchemaRoot root();
+
+    /** Fills {@link #root()} with the next batch; returns false once the stream is exhausted. */
+    boolean fillNext();
+
+    @Override
+    void close();
+  }
+
+  private final String name;
+  private final ServerStreamListener listener;
+  private final Supplier<? extends BatchSource> sourceFactory;
+  private final MetricsMiddleware metrics; // null when the metrics middleware is not installed
+
+  // Guarded by "this"
+  private ScheduledFuture<?> startTimer;
+  private boolean delaying;
+  private BatchSource source;
+  private boolean finished;
+
+  private AsyncStreamWriter(String name, ServerStreamListener listener, Supplier<? extends BatchSource> sourceFactory,
+                            MetricsMiddleware metrics) {
+    this.name = name;
+    this.listener = listener;
+    this.sourceFactory = sourceFactory;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Starts streaming after {@code delayMs} (0 = immediately on the calling thread).
+   * The source is only created once the delay has elapsed, so a waiting stream holds
+   * no Arrow memory. Batches sent are reported to {@code metrics} if it is not null.
+   */
+  static AsyncStreamWriter start(String name, ServerStreamListener listener, ScheduledExecutorService timer,
+                                 long delayMs, Supplier<? extends BatchSource> sourceFactory,
+                                 MetricsMiddleware metrics) {
+    AsyncStreamWriter writer = new AsyncStreamWriter(name, listener, sourceFactory, metrics);
+    listener.setOnCancelHandler(writer::onCancel);
+    listener.setOnReadyHandler(writer::pump);
+
+    if (delayMs > 0) {
+      synchronized (writer) {
+        writer.delaying = true;
+        writer.startTimer = timer.schedule(writer::onDelayElapsed, delayMs, TimeUnit.MILLISECONDS);
+      }
+    } else {
+      writer.pump();
+    }
+    return writer;
+  }
+
+  private synchronized void onDelayElapsed() {
+    delaying = false;
+    pump();
+  }
+
+  private synchronized void pump() {
+    if (finished || delaying) {
+      // Nothing to do, or onReady fired while we are still waiting out the start delay
+      return;
+    }
+    if (listener.isCancelled()) {
+      onCancel();
+      return;
+    }
+
+    try {
+      if (source == null) {
+        Log.debug("📤 Starting data stream: {}", name);
+        source = sourceFactory.get();
+        listener.start(source.root());
+      }
+
+      while (listener.isReady()) {
+        if (!source.fillNext()) {
+          listener.completed();
+          Log.debug("✅ Data stream completed: {}", name);
+          release();
+          return;
+        }
+        listener.putNext();
+        if (metrics != null) {
+          metrics.batchSent(bodyBytes(source.root()));
+        }
+      }
+      // Not ready: the onReady handler calls pump() again when the client catches up
+    } catch (Exception e) {
+      Log.warn("❌ Error in stream {}: {}", name, e.getMessage());
+      listener.error(e);
+      release();
+    }
+  }
+
+  private synchronized void onCancel() {
+    if (finished) {
+      return;
+    }
+    Log.debug("❌ Stream cancelled by client: {}", name);
+    if (startTimer != null) {
+      startTimer.cancel(false);
+    }
+    release();
+  }
+
+  private static long bodyBytes(VectorSchemaRoot root) {
+    long bytes = 0;
+    for (FieldVector vector : root.getFieldVectors()) {
+      bytes += vector.getBufferSize();
+    }
+    return bytes;
+  }
+
+  // Caller holds "this"
+  private void release() {
+    finished = true;
+    if (source != null) {
+      source.close();
+      source = null;
+    }
+  }
+}
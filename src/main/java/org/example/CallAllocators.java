@@ -0,0 +1,196 @@
+package org.example;
+
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.OutOfMemoryException;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Hands out a named, limited child allocator to every call and poll query.
+ *
+ * Allocators are grouped under one intermediate allocator per RPC type
+ * ("getStream", "pollQuery"), so Arrow's own accounting gives current and peak usage per
+ * type. A call that goes over its limit fails with RESOURCE_EXHAUSTED
+ * instead of letting one huge result take down the process.
+ */
+final class CallAllocators implements AutoCloseable {
+  static final String GET_STREAM = "getStream";
+  static final String POLL_QUERY = "pollQuery";
+
+  // How long a finished call's allocator may wait for gRPC to release buffers it is still writing
+  private static final long CLOSE_RETRY_MS = 100;
+  private static final int CLOSE_MAX_RETRIES = 100;
+
+  private static final class TypeStats {
+    final BufferAllocator allocator;
+    final long callLimit;
+    final AtomicLong opened = new AtomicLong();
+    final AtomicLong limitExceeded = new AtomicLong();
+
+    TypeStats(BufferAllocator allocator, long callLimit) {
+      this.allocator = allocator;
+      this.callLimit = callLimit;
+    }
+  }
+
+  private final BufferAllocator root;
+  private final ScheduledExecutorService closer;
+  private final Map<String, TypeStats> types = new ConcurrentHashMap<>();
+  private final AtomicLong callIds = new AtomicLong();
+  // Completes once the allocator is closed, so shutdown can wait for the calls still draining
+  private final Map<BufferAllocator, CompletableFuture<Void>> outstanding = new ConcurrentHashMap<>();
+
+  CallAllocators(BufferAllocator root, ServerConfig config, ScheduledExecutorService closer) {
+    this.root = root;
+    this.closer = closer;
+    register(GET_STREAM, config.callMemoryLimitBytes);
+    register(POLL_QUERY, config.queryMemoryLimitBytes);
+  }
+
+  private void register(String rpcType, long callLimit) {
+    BufferAllocator typeAllocator = root.newChildAllocator("rpc-" + rpcType, 0, root.getLimit());
+    types.put(rpcType, new TypeStats(typeAllocator, callLimit));
+  }
+
+  /**
+   * Opens a child allocator for one call; release it with {@link #release}.
+   */
+  BufferAllocator open(String rpcType, String name) {
+    TypeStats stats = types.get(rpcType);
+    stats.opened.incrementAndGet();
+    BufferAllocator callAllocator = stats.allocator.newChildAllocator(
+        rpcType + "-" + callIds.incrementAndGet() + ":" + name, 0, stats.callLimit);
+    outstanding.put(callAllocator, new CompletableFuture<>());
+    return callAllocator;
+  }
+
+  /**
+   * Opens a batch source whose vectors live in their own call allocator, which is
+   * released together with the source.
+   */
+  AsyncStreamWriter.BatchSource openSource(String rpcType, String name,
+                                           Function<BufferAllocator, ? extends AsyncStreamWriter.BatchSource> factory) {
+    BufferAllocator callAllocator = open(rpcType, name);
+    AsyncStreamWriter.BatchSource source;
+    try {
+      source = factory.apply(callAllocator);
+    } catch (OutOfMemoryException e) {
+      release(callAllocator);
+      throw toStatus(rpcType, name, e);
+    } catch (RuntimeException e) {
+      release(callAllocator);
+      throw e;
+    }
+    return new AsyncStreamWriter.BatchSource() {
+      @Override
+      public VectorSchemaRoot root() {
+        return source.root();
+      }
+
+      @Override
+      public boolean fillNext() {
+        try {
+          return source.fillNext();
+        } catch (OutOfMemoryException e) {
+          throw toStatus(rpcType, name, e);
+        }
+      }
+
+      @Override
+      public void close() {
+        source.close();
+        release(callAllocator);
+      }
+    };
+  }
+
+  /**
+   * Closes a call allocator. gRPC may still hold the last batches it was handed
+   * until they are on the wire, so closing waits (on a timer) for them to drain.
+   */
+  void release(BufferAllocator callAllocator) {
+    closeWhenDrained(callAllocator, 0);
+  }
+
+  private void closeWhenDrained(BufferAllocator callAllocator, int attempt) {
+    if (callAllocator.getAllocatedMemory() > 0 && attempt < CLOSE_MAX_RETRIES && !closer.isShutdown()) {
+      closer.schedule(() -> closeWhenDrained(callAllocator, attempt + 1), CLOSE_RETRY_MS, TimeUnit.MILLISECONDS);
+      return;
+    }
+    closeQuietly(callAllocator);
+    CompletableFuture<Void> closed = outstanding.remove(callAllocator);
+    if (closed != null) {
+      closed.complete(null);
+    }
+  }
+
+  private static void closeQuietly(BufferAllocator allocator) {
+    try {
+      allocator.close();
+    } catch (IllegalStateException e) {
+      Log.warn("⚠️ Allocator {} closed with memory still in use: {} bytes",
+          allocator.getName(), allocator.getAllocatedMemory());
+    }
+  }
+
+  private RuntimeException toStatus(String rpcType, String name, OutOfMemoryException e) {
+    types.get(rpcType).limitExceeded.incrementAndGet();
+    return CallStatus.RESOURCE_EXHAUSTED
+        .withDescription("Memory limit exceeded for " + name + ": " + e.getMessage())
+        .withCause(e)
+        .toRuntimeException();
+  }
+
+  String stats() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("total allocated=%d peak=%d limit=%d",
+        root.getAllocatedMemory(), root.getPeakMemoryAllocation(), root.getLimit()));
+    types.forEach((rpcType, stats) -> sb.append(String.format(
+        "%n%s allocated=%d peak=%d callLimit=%d active=%d opened=%d limitExceeded=%d",
+        rpcType, stats.allocator.getAllocatedMemory(), stats.allocator.getPeakMemoryAllocation(),
+        stats.callLimit, stats.allocator.getChildAllocators().size(), stats.opened.get(),
+        stats.limitExceeded.get())));
+    for (BufferAllocator child : root.getChildAllocators()) {
+      if (!child.getName().startsWith("rpc-")) {
+        sb.append(String.format("%n%s allocated=%d peak=%d",
+            child.getName(), child.getAllocatedMemory(), child.getPeakMemoryAllocation()));
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Closes the per-type allocators at shutdown. Allocators already released get up to
+   * CLOSE_RETRY_MS * CLOSE_MAX_RETRIES in total to drain; whatever is left after
+   * that is logged, not thrown.
+   */
+  @Override
+  public void close() {
+    CompletableFuture<?>[] pending = outstanding.values().toArray(new CompletableFuture<?>[0]);
+    try {
+      CompletableFuture.allOf(pending).get(CLOSE_RETRY_MS * CLOSE_MAX_RETRIES, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      Log.warn("⚠️ {} call allocators still open at shutdown", outstanding.size());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+    for (TypeStats stats : types.values()) {
+      for (BufferAllocator child : stats.allocator.getChildAllocators()) {
+        closeQuietly(child);
+      }
+      closeQuietly(stats.allocator);
+    }
+  }
+}
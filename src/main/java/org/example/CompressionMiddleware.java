@@ -0,0 +1,122 @@
+package org.example;
+
+import io.grpc.Context;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallInfo;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightMethod;
+import org.apache.arrow.flight.FlightServerMiddleware;
+import org.apache.arrow.flight.RequestContext;
+import org.apache.arrow.flight.grpc.ServerInterceptorAdapter;
+import org.apache.arrow.flight.impl.FlightServiceGrpc;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Negotiates compression on DoGet calls.
+ *
+ * A client that sends {@code x-flight-compression: lz4|zstd|none} asks for the
+ * stream compressed with that codec (see {@link BatchCompression}). A {@code compression}
+ * parameter on the ticket takes precedence, so one stream can be tuned without changing
+ * the client's headers. The producer records its choice with {@link #compressResponse},
+ * and the {@link Negotiator} applies it when the response headers go out, provided the
+ * client's {@code grpc-accept-encoding} lists the codec.
+ */
+final class CompressionMiddleware implements FlightServerMiddleware {
+  static final Key<CompressionMiddleware> KEY = Key.of("compression");
+
+  static final class Factory implements FlightServerMiddleware.Factory<CompressionMiddleware> {
+    @Override
+    public CompressionMiddleware onCallStarted(CallInfo info, CallHeaders incomingHeaders, RequestContext context) {
+      String requested = info.method() == FlightMethod.DO_GET ? incomingHeaders.get(BatchCompression.HEADER) : null;
+      if (requested != null) {
+        try {
+          BatchCompression.encoding(requested);
+        } catch (RuntimeException e) {
+          throw CallStatus.INVALID_ARGUMENT
+              .withDescription("Invalid " + BatchCompression.HEADER + ": " + requested)
+              .toRuntimeException();
+        }
+      }
+      return new CompressionMiddleware(requested);
+    }
+  }
+
+  private final String compression;
+  private volatile String responseEncoding; // null = uncompressed
+
+  private CompressionMiddleware(String compression) {
+    this.compression = compression;
+  }
+
+  /** The codec the client asked for in the header, or null if it didn't. */
+  String compression() {
+    return compression;
+  }
+
+  /** Compress the response with this gRPC encoding (null = don't), if the client accepts it. */
+  void compressResponse(String encoding) {
+    responseEncoding = encoding;
+  }
+
+  @Override
+  public void onBeforeSendingHeaders(CallHeaders outgoingHeaders) {
+  }
+
+  @Override
+  public void onCallCompleted(CallStatus status) {
+  }
+
+  @Override
+  public void onCallErrored(Throwable err) {
+  }
+
+  /**
+   * Sets the DoGet response encoding the producer chose, or leaves the stream
+   * uncompressed if the client cannot decode it. Runs inside Flight's middleware, so
+   * the call's CompressionMiddleware is in the gRPC context.
+   */
+  static final class Negotiator implements ServerInterceptor {
+    private static final String METHOD = FlightServiceGrpc.getDoGetMethod().getFullMethodName();
+    private static final Metadata.Key<String> ACCEPT_ENCODING =
+        Metadata.Key.of("grpc-accept-encoding", Metadata.ASCII_STRING_MARSHALLER);
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+      CompressionMiddleware middleware = METHOD.equals(call.getMethodDescriptor().getFullMethodName())
+          ? current() : null;
+      if (middleware == null) {
+        return next.startCall(call, headers);
+      }
+      String accepted = headers.get(ACCEPT_ENCODING);
+      return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+        @Override
+        public void sendHeaders(Metadata responseHeaders) {
+          String encoding = middleware.responseEncoding;
+          if (encoding != null) {
+            if (accepted != null && Arrays.asList(accepted.split("\\s*,\\s*")).contains(encoding)) {
+              setCompression(encoding);
+            } else {
+              Log.debug("🗜️ Client does not accept {} (accepts {}), sending uncompressed", encoding, accepted);
+            }
+          }
+          super.sendHeaders(responseHeaders);
+        }
+      }, headers);
+    }
+
+    private static CompressionMiddleware current() {
+      Map<FlightServerMiddleware.Key<?>, FlightServerMiddleware> middleware =
+          ServerInterceptorAdapter.SERVER_MIDDLEWARE_KEY.get(Context.current());
+      FlightServerMiddleware compression = middleware == null ? null : middleware.get(KEY);
+      return compression instanceof CompressionMiddleware ? (CompressionMiddleware) compression : null;
+    }
+  }
+}
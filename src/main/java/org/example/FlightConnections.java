@@ -0,0 +1,186 @@
+package org.example;
+
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightGrpcUtils;
+import org.apache.arrow.memory.BufferAllocator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client connections for the load tester.
+ *
+ * PER_REQUEST opens a new gRPC channel (TCP + HTTP/2 handshake) for every request,
+ * which is what exercises NLB connection churn. POOLED opens a fixed number of
+ * long-lived channels up front and multiplexes every worker's requests over them.
+ * Either way the channel is connected explicitly before the first RPC, so the
+ * handshake is timed on its own instead of being folded into the first call.
+ */
+final class FlightConnections implements AutoCloseable {
+
+  enum Mode { PER_REQUEST, POOLED }
+
+  /**
+   * A client to use for one request; close it when the request is done.
+   */
+  interface Lease extends AutoCloseable {
+    FlightClient client();
+
+    /** Nanoseconds spent connecting for this request (0 for a pooled channel). */
+    long connectNanos();
+
+    @Override
+    void close();
+  }
+
+  private static final long CONNECT_TIMEOUT_MS = 30_000;
+
+  private final Mode mode;
+  private final String host;
+  private final int port;
+  private final BufferAllocator allocator;
+  private final List<ManagedChannel> pooledChannels = new ArrayList<>();
+  private final List<FlightClient> pooledClients = new ArrayList<>();
+  private final List<Long> poolConnectNanos = new ArrayList<>();
+  private final AtomicInteger next = new AtomicInteger();
+
+  FlightConnections(Mode mode, String host, int port, int poolSize, BufferAllocator allocator)
+      throws IOException, InterruptedException, TimeoutException {
+    this.mode = mode;
+    this.host = host;
+    this.port = port;
+    this.allocator = allocator;
+    if (mode == Mode.POOLED) {
+      try {
+        for (int i = 0; i < Math.max(1, poolSize); i++) {
+          ManagedChannel channel = newChannel();
+          pooledChannels.add(channel);
+          poolConnectNanos.add(connect(channel));
+          pooledClients.add(FlightGrpcUtils.createFlightClientWithSharedChannel(allocator, channel));
+        }
+      } catch (IOException | InterruptedException | TimeoutException | RuntimeException e) {
+        close();
+        throw e;
+      }
+    }
+  }
+
+  Mode mode() {
+    return mode;
+  }
+
+  /** Connect times of the pooled channels, measured when the pool was opened. */
+  List<Long> poolConnectNanos() {
+    return poolConnectNanos;
+  }
+
+  /**
+   * The next pooled channel, round-robin, for callers that drive the gRPC stubs directly.
+   */
+  ManagedChannel channel() {
+    if (mode != Mode.POOLED) {
+      throw new IllegalStateException("Direct channel access needs pooled connections");
+    }
+    return pooledChannels.get(Math.floorMod(next.getAndIncrement(), pooledChannels.size()));
+  }
+
+  Lease acquire() throws IOException, InterruptedException, TimeoutException {
+    if (mode == Mode.POOLED) {
+      FlightClient client = pooledClients.get(Math.floorMod(next.getAndIncrement(), pooledClients.size()));
+      return lease(client, 0, false);
+    }
+    ManagedChannel channel = newChannel();
+    long connectNanos;
+    try {
+      connectNanos = connect(channel);
+    } catch (IOException | InterruptedException | TimeoutException | RuntimeException e) {
+      channel.shutdownNow();
+      throw e;
+    }
+    // This client owns the channel and shuts it down on close
+    return lease(FlightGrpcUtils.createFlightClient(allocator, channel), connectNanos, true);
+  }
+
+  private static Lease lease(FlightClient client, long connectNanos, boolean closeClient) {
+    return new Lease() {
+      @Override
+      public FlightClient client() {
+        return client;
+      }
+
+      @Override
+      public long connectNanos() {
+        return connectNanos;
+      }
+
+      @Override
+      public void close() {
+        if (closeClient) {
+          try {
+            client.close();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    };
+  }
+
+  private ManagedChannel newChannel() {
+    return NettyChannelBuilder.forAddress(host, port)
+        .usePlaintext()
+        .maxInboundMessageSize(Integer.MAX_VALUE)
+        .build();
+  }
+
+  /**
+   * Connects the channel and waits until it is READY; returns the time taken.
+   */
+  private static long connect(ManagedChannel channel) throws IOException, InterruptedException, TimeoutException {
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MS);
+    ConnectivityState state = channel.getState(true);
+    while (state != ConnectivityState.READY) {
+      if (state == ConnectivityState.TRANSIENT_FAILURE || state == ConnectivityState.SHUTDOWN) {
+        throw new IOException("Connection failed (" + state + ")");
+      }
+      CountDownLatch changed = new CountDownLatch(1);
+      channel.notifyWhenStateChanged(state, changed::countDown);
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0 || !changed.await(remaining, TimeUnit.NANOSECONDS)) {
+        throw new TimeoutException("Connect timed out after " + CONNECT_TIMEOUT_MS + " ms");
+      }
+      state = channel.getState(true);
+    }
+    return System.nanoTime() - start;
+  }
+
+  @Override
+  public void close() {
+    for (FlightClient client : pooledClients) {
+      try {
+        client.close();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (ManagedChannel channel : pooledChannels) {
+      channel.shutdown();
+    }
+    for (ManagedChannel channel : pooledChannels) {
+      try {
+        channel.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
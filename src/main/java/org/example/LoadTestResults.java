@@ -0,0 +1,414 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.grpc.StatusRuntimeException;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.flight.grpc.StatusUtils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Machine-readable record of a load test run: a per-second time series (throughput,
+ * per-operation latency percentiles, client CPU/GC/heap), per-operation percentiles
+ * for the whole run, and errors broken down by Flight status code.
+ *
+ * Written as JSON (the full record, also the input to {@link #compare}) and CSV (the
+ * time series only, one row per second).
+ */
+final class LoadTestResults {
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final String[] PERCENTILE_KEYS = {"p50", "p90", "p99", "p99.9"};
+  private static final ObjectMapper JSON = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  private final String testName;
+  private final ObjectNode config = JSON.createObjectNode();
+  private final Instant startedAt = Instant.now();
+  // Interval histograms, one set per recording thread, drained by the sampler once a second
+  private final Queue<IntervalRecorder> recorders = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<IntervalRecorder> localRecorder = ThreadLocal.withInitial(() -> {
+    IntervalRecorder recorder = new IntervalRecorder(Thread.currentThread());
+    recorders.add(recorder);
+    return recorder;
+  });
+  private final Map<String, Map<FlightStatusCode, AtomicLong>> errors = new ConcurrentHashMap<>();
+  private final List<ObjectNode> timeseries = new ArrayList<>();
+  private final Set<String> seriesOperations = new LinkedHashSet<>();
+  private ScheduledExecutorService sampler;
+  private ObjectNode document;
+
+  // Previous sample, only touched by the sampler thread
+  private long lastSampleNanos;
+  private long lastCompleted;
+  private long lastFailed;
+  private long lastCpuNanos;
+  private long lastGcCount;
+  private long lastGcMillis;
+
+  LoadTestResults(String testName) {
+    this.testName = testName;
+  }
+
+  /** Run settings to store with the results, e.g. threads, rate, engine. */
+  ObjectNode config() {
+    return config;
+  }
+
+  /**
+   * Starts sampling once a second.
+   *
+   * @param completed requests completed so far (successful or not)
+   * @param failed requests failed so far
+   */
+  void start(LongSupplier completed, LongSupplier failed) {
+    lastSampleNanos = System.nanoTime();
+    lastCpuNanos = processCpuNanos();
+    lastGcCount = gcCount();
+    lastGcMillis = gcMillis();
+    sampler = Executors.newSingleThreadScheduledExecutor(new QueryExecutor.NamedThreadFactory("results-sampler"));
+    sampler.scheduleAtFixedRate(() -> sample(completed, failed), 1, 1, TimeUnit.SECONDS);
+  }
+
+  /** Latency for the current one-second interval; the caller keeps its own whole-run histograms. */
+  void recordLatency(String operation, long nanos) {
+    localRecorder.get().record(operation, nanos);
+  }
+
+  void recordError(String operation, Throwable error) {
+    errors.computeIfAbsent(operation, op -> new ConcurrentHashMap<>())
+        .computeIfAbsent(statusCode(error), code -> new AtomicLong())
+        .incrementAndGet();
+  }
+
+  static FlightStatusCode statusCode(Throwable error) {
+    if (error instanceof FlightRuntimeException) {
+      return ((FlightRuntimeException) error).status().code();
+    }
+    // FlightConnections reports a failed or slow connect as a plain exception
+    if (error instanceof TimeoutException) {
+      return FlightStatusCode.TIMED_OUT;
+    }
+    if (error instanceof IOException) {
+      return FlightStatusCode.UNAVAILABLE;
+    }
+    Throwable cause = error;
+    while (cause.getCause() != null && !(cause instanceof StatusRuntimeException)) {
+      cause = cause.getCause();
+    }
+    return StatusUtils.fromThrowable(cause).status().code();
+  }
+
+  private void sample(LongSupplier completed, LongSupplier failed) {
+    long now = System.nanoTime();
+    Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    for (IntervalRecorder recorder : recorders) {
+      // Checked before draining: a thread already finished has recorded its last value,
+      // so this drain gets everything and the recorder can go
+      boolean finished = !recorder.owner.isAlive();
+      recorder.drainInto(latencies);
+      if (finished) {
+        recorders.remove(recorder);
+      }
+    }
+    long completedNow = completed.getAsLong();
+    long failedNow = failed.getAsLong();
+    long cpuNow = processCpuNanos();
+    long gcCountNow = gcCount();
+    long gcMillisNow = gcMillis();
+    double seconds = (now - lastSampleNanos) / 1e9;
+
+    ObjectNode point = JSON.createObjectNode();
+    point.put("second", timeseries.size() + 1);
+    point.put("requests", completedNow - lastCompleted);
+    point.put("failed", failedNow - lastFailed);
+    point.put("throughput", round((completedNow - lastCompleted) / seconds));
+    point.put("cpuLoad", cpuNow < 0 ? -1
+        : round((cpuNow - lastCpuNanos) / (seconds * 1e9 * Runtime.getRuntime().availableProcessors())));
+    point.put("gcCount", gcCountNow - lastGcCount);
+    point.put("gcTimeMs", gcMillisNow - lastGcMillis);
+    point.put("heapUsedBytes", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+    ObjectNode latency = point.putObject("latencyMs");
+    latencies.forEach((op, h) -> {
+      seriesOperations.add(op);
+      latency.set(op, percentiles(h));
+    });
+    synchronized (timeseries) {
+      timeseries.add(point);
+    }
+
+    lastSampleNanos = now;
+    lastCompleted = completedNow;
+    lastFailed = failedNow;
+    lastCpuNanos = cpuNow;
+    lastGcCount = gcCountNow;
+    lastGcMillis = gcMillisNow;
+  }
+
+  /**
+   * Stops sampling and builds the final document.
+   *
+   * @param operations whole-run latency histograms per operation
+   */
+  void finish(long durationSeconds, long requests, long successful, long failed,
+              Map<String, LatencyHistogram> operations) {
+    if (sampler != null) {
+      sampler.shutdown();
+      try {
+        sampler.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    document = JSON.createObjectNode();
+    document.put("test", testName);
+    document.put("startedAt", startedAt.toString());
+    document.put("durationSeconds", durationSeconds);
+    document.set("config", config);
+
+    ObjectNode summary = document.putObject("summary");
+    summary.put("requests", requests);
+    summary.put("successful", successful);
+    summary.put("failed", failed);
+    summary.put("throughput", round((double) requests / durationSeconds));
+    summary.put("successThroughput", round((double) successful / durationSeconds));
+
+    ObjectNode ops = document.putObject("operations");
+    operations.forEach((op, h) -> ops.set(op, percentiles(h)));
+
+    ObjectNode errorNode = document.putObject("errors");
+    errors.forEach((op, byCode) -> {
+      ObjectNode codes = errorNode.putObject(op);
+      byCode.forEach((code, count) -> codes.put(code.name(), count.get()));
+    });
+
+    ObjectNode client = document.putObject("client");
+    client.put("cpuSeconds", round(processCpuNanos() / 1e9));
+    client.put("gcCount", gcCount());
+    client.put("gcTimeMs", gcMillis());
+    client.put("peakHeapUsedBytes", timeseries.stream()
+        .mapToLong(p -> p.get("heapUsedBytes").asLong()).max().orElse(0));
+    client.put("processors", Runtime.getRuntime().availableProcessors());
+
+    ArrayNode series = document.putArray("timeseries");
+    synchronized (timeseries) {
+      series.addAll(timeseries);
+    }
+  }
+
+  /** Writes {@code <prefix>.json} and {@code <prefix>.csv}; returns the JSON path. */
+  Path write(Path prefix) throws IOException {
+    if (prefix.getParent() != null) {
+      Files.createDirectories(prefix.getParent());
+    }
+    Path json = prefix.resolveSibling(prefix.getFileName() + ".json");
+    Path csv = prefix.resolveSibling(prefix.getFileName() + ".csv");
+    JSON.writeValue(json.toFile(), document);
+
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csv, StandardCharsets.UTF_8))) {
+      StringBuilder header = new StringBuilder("second,requests,failed,throughput,cpu_load,gc_count,gc_time_ms,heap_used_bytes");
+      for (String op : seriesOperations) {
+        for (String p : PERCENTILE_KEYS) {
+          header.append(',').append(csvColumn(op)).append('_').append(p.replace(".", "_")).append("_ms");
+        }
+      }
+      out.println(header);
+      synchronized (timeseries) {
+        for (ObjectNode point : timeseries) {
+          StringBuilder row = new StringBuilder();
+          row.append(point.get("second").asLong()).append(',')
+              .append(point.get("requests").asLong()).append(',')
+              .append(point.get("failed").asLong()).append(',')
+              .append(point.get("throughput").asDouble()).append(',')
+              .append(point.get("cpuLoad").asDouble()).append(',')
+              .append(point.get("gcCount").asLong()).append(',')
+              .append(point.get("gcTimeMs").asLong()).append(',')
+              .append(point.get("heapUsedBytes").asLong());
+          JsonNode latency = point.get("latencyMs");
+          for (String op : seriesOperations) {
+            JsonNode values = latency.get(op);
+            for (String p : PERCENTILE_KEYS) {
+              row.append(',');
+              if (values != null) {
+                row.append(values.get(p).asDouble());
+              }
+            }
+          }
+          out.println(row);
+        }
+      }
+    }
+    return json;
+  }
+
+  /** Default output prefix: {@code load-test-results/<test>-<timestamp>}. */
+  static Path defaultPrefix(String testName) {
+    String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+    return Path.of("load-test-results", testName + "-" + stamp);
+  }
+
+  /**
+   * Compares this run with a baseline written by an earlier run and prints the
+   * differences. A drop in successful throughput, or a rise in any operation's p99,
+   * of more than {@code tolerancePercent} is a regression. Operations only one side
+   * has, and baselines of 0 (nothing to scale a tolerance from), are reported but
+   * not judged.
+   *
+   * @return true if nothing regressed
+   */
+  boolean compare(Path baselineFile, double tolerancePercent) throws IOException {
+    JsonNode baseline = JSON.readTree(baselineFile.toFile());
+    double limit = tolerancePercent / 100.0;
+    boolean ok = true;
+
+    System.out.println();
+    System.out.println("📐 Comparison with baseline " + baselineFile + " (tolerance " + tolerancePercent + "%)");
+    double baseThroughput = baseline.path("summary").path("successThroughput").asDouble();
+    double throughput = document.path("summary").path("successThroughput").asDouble();
+    if (baseThroughput <= 0) {
+      System.out.println(String.format("  ⚠️  %-32s %10.2f -> %10.2f  (no baseline throughput, not checked)",
+          "successful req/s", baseThroughput, throughput));
+    } else {
+      boolean throughputOk = throughput >= baseThroughput * (1 - limit);
+      ok &= throughputOk;
+      System.out.println(String.format("  %s %-32s %10.2f -> %10.2f  (%+.1f%%)", throughputOk ? "✅" : "❌",
+          "successful req/s", baseThroughput, throughput, change(baseThroughput, throughput)));
+    }
+
+    Iterator<Map.Entry<String, JsonNode>> ops = document.path("operations").fields();
+    while (ops.hasNext()) {
+      Map.Entry<String, JsonNode> entry = ops.next();
+      JsonNode base = baseline.path("operations").path(entry.getKey());
+      if (base.isMissingNode()) {
+        System.out.println("  ⚠️  " + entry.getKey() + ": added (not in baseline), not checked");
+        continue;
+      }
+      double baseP99 = base.path("p99").asDouble();
+      double p99 = entry.getValue().path("p99").asDouble();
+      if (baseP99 <= 0) {
+        System.out.println(String.format("  ⚠️  %-32s %10.2f -> %10.2f  (baseline p99 is 0, not checked)",
+            entry.getKey() + " p99 ms", baseP99, p99));
+        continue;
+      }
+      boolean p99Ok = p99 <= baseP99 * (1 + limit);
+      ok &= p99Ok;
+      System.out.println(String.format("  %s %-32s %10.2f -> %10.2f  (%+.1f%%)", p99Ok ? "✅" : "❌",
+          entry.getKey() + " p99 ms", baseP99, p99, change(baseP99, p99)));
+    }
+    Iterator<String> baseOps = baseline.path("operations").fieldNames();
+    while (baseOps.hasNext()) {
+      String op = baseOps.next();
+      if (document.path("operations").path(op).isMissingNode()) {
+        System.out.println("  ⚠️  " + op + ": removed (in baseline, not in this run)");
+      }
+    }
+    System.out.println(ok ? "  No regression beyond tolerance" : "  ❌ Regression beyond tolerance");
+    return ok;
+  }
+
+  /**
+   * One thread's latencies for the current interval. Only the owning thread records and
+   * only the sampler drains, so the lock is uncontended except once a second; a record
+   * lands in exactly one interval.
+   */
+  private static final class IntervalRecorder {
+    private final Thread owner;
+    private final Map<String, LatencyHistogram> histograms = new HashMap<>();
+
+    IntervalRecorder(Thread owner) {
+      this.owner = owner;
+    }
+
+    synchronized void record(String operation, long nanos) {
+      histograms.computeIfAbsent(operation, op -> new LatencyHistogram()).record(nanos);
+    }
+
+    /** Adds this interval's latencies to {@code target} and starts a new interval. */
+    synchronized void drainInto(Map<String, LatencyHistogram> target) {
+      histograms.forEach((op, h) -> {
+        if (h.count() > 0) {
+          target.computeIfAbsent(op, o -> new LatencyHistogram()).merge(h);
+          h.reset();
+        }
+      });
+    }
+  }
+
+  private static double change(double before, double after) {
+    return before == 0 ? 0 : 100.0 * (after - before) / before;
+  }
+
+  private static ObjectNode percentiles(LatencyHistogram h) {
+    ObjectNode node = JSON.createObjectNode();
+    node.put("count", h.count());
+    node.put("mean", round(h.mean() / 1e6));
+    for (int i = 0; i < PERCENTILES.length; i++) {
+      node.put(PERCENTILE_KEYS[i], round(h.valueAtPercentile(PERCENTILES[i]) / 1e6));
+    }
+    node.put("max", round(h.max() / 1e6));
+    return node;
+  }
+
+  private static String csvColumn(String operation) {
+    return operation.replaceAll("[^A-Za-z0-9]+", "_").replaceAll("_$", "");
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 1000) / 1000.0;
+  }
+
+  private static long processCpuNanos() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+    }
+    return -1;
+  }
+
+  private static long gcCount() {
+    long total = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, gc.getCollectionCount());
+    }
+    return total;
+  }
+
+  private static long gcMillis() {
+    long total = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      total += Math.max(0, gc.getCollectionTime());
+    }
+    return total;
+  }
+}
@@ -0,0 +1,265 @@
+package org.example;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Asynchronous, level-gated server log.
+ *
+ * A disabled level costs one volatile read: the message is neither built nor
+ * queued. Enabled messages are stored unformatted (template plus up to three
+ * arguments) in a lock-free ring buffer; a background thread fills in the
+ * {@code {}} placeholders and writes them in batches, so request threads never
+ * take the stdout lock. If the writer falls behind and the ring is full,
+ * messages are dropped and counted rather than blocking the caller.
+ *
+ * The level is read from {@code -Dflight.log.level} (DEBUG, INFO, WARN, ERROR; default INFO).
+ */
+final class Log {
+
+  enum Level { DEBUG, INFO, WARN, ERROR }
+
+  private static final class Slot {
+    // Published sequence + 1; the writer only reads a slot once this matches
+    volatile long published;
+    Level level;
+    String template;
+    Object arg0;
+    Object arg1;
+    Object arg2;
+    int argCount;
+    Supplier<String> supplier;
+  }
+
+  private static final int CAPACITY = Integer.highestOneBit(
+      Math.max(1024, Integer.getInteger("flight.log.bufferSize", 8192)));
+  private static final int MASK = CAPACITY - 1;
+  private static final Slot[] RING = new Slot[CAPACITY];
+
+  private static final AtomicLong claimed = new AtomicLong();
+  private static final AtomicLong dropped = new AtomicLong();
+  private static volatile long consumed;
+  private static volatile int threshold = parseLevel(System.getProperty("flight.log.level", "INFO")).ordinal();
+  private static volatile boolean running = true;
+  private static volatile boolean writerParked;
+  private static final Thread writer;
+
+  static {
+    for (int i = 0; i < CAPACITY; i++) {
+      RING[i] = new Slot();
+    }
+    writer = new Thread(Log::drainLoop, "log-writer");
+    writer.setDaemon(true);
+    writer.start();
+    Runtime.getRuntime().addShutdownHook(new Thread(Log::shutdown, "log-flush"));
+  }
+
+  private Log() {
+  }
+
+  static boolean isEnabled(Level level) {
+    return level.ordinal() >= threshold;
+  }
+
+  static boolean isDebugEnabled() {
+    return Level.DEBUG.ordinal() >= threshold;
+  }
+
+  static void setLevel(Level level) {
+    threshold = level.ordinal();
+  }
+
+  static long droppedCount() {
+    return dropped.get();
+  }
+
+  // Fixed-arity overloads avoid allocating a varargs array on every call
+
+  static void debug(String message) { log(Level.DEBUG, message, null, null, null, 0); }
+  static void debug(String template, Object a) { log(Level.DEBUG, template, a, null, null, 1); }
+  static void debug(String template, Object a, Object b) { log(Level.DEBUG, template, a, b, null, 2); }
+  static void debug(String template, Object a, Object b, Object c) { log(Level.DEBUG, template, a, b, c, 3); }
+  static void debug(Supplier<String> message) { log(Level.DEBUG, message); }
+
+  static void info(String message) { log(Level.INFO, message, null, null, null, 0); }
+  static void info(String template, Object a) { log(Level.INFO, template, a, null, null, 1); }
+  static void info(String template, Object a, Object b) { log(Level.INFO, template, a, b, null, 2); }
+  static void info(String template, Object a, Object b, Object c) { log(Level.INFO, template, a, b, c, 3); }
+
+  static void warn(String message) { log(Level.WARN, message, null, null, null, 0); }
+  static void warn(String template, Object a) { log(Level.WARN, template, a, null, null, 1); }
+  static void warn(String template, Object a, Object b) { log(Level.WARN, template, a, b, null, 2); }
+  static void warn(String template, Object a, Object b, Object c) { log(Level.WARN, template, a, b, c, 3); }
+
+  /** A trailing {@link Throwable} argument without a placeholder is printed with its stack trace. */
+  static void error(String message) { log(Level.ERROR, message, null, null, null, 0); }
+  static void error(String template, Object a) { log(Level.ERROR, template, a, null, null, 1); }
+  static void error(String template, Object a, Object b) { log(Level.ERROR, template, a, b, null, 2); }
+  static void error(String template, Object a, Object b, Object c) { log(Level.ERROR, template, a, b, c, 3); }
+
+  private static void log(Level level, String template, Object a, Object b, Object c, int argCount) {
+    if (level.ordinal() < threshold) {
+      return;
+    }
+    long sequence = claim();
+    if (sequence < 0) {
+      return;
+    }
+    Slot slot = RING[(int) (sequence & MASK)];
+    slot.level = level;
+    slot.template = template;
+    slot.arg0 = a;
+    slot.arg1 = b;
+    slot.arg2 = c;
+    slot.argCount = argCount;
+    slot.supplier = null;
+    publish(slot, sequence);
+  }
+
+  private static void log(Level level, Supplier<String> supplier) {
+    if (level.ordinal() < threshold) {
+      return;
+    }
+    long sequence = claim();
+    if (sequence < 0) {
+      return;
+    }
+    Slot slot = RING[(int) (sequence & MASK)];
+    slot.level = level;
+    slot.template = null;
+    slot.argCount = 0;
+    slot.supplier = supplier;
+    publish(slot, sequence);
+  }
+
+  // Returns the claimed sequence, or -1 if the ring is full
+  private static long claim() {
+    while (true) {
+      long next = claimed.get();
+      if (next - consumed >= CAPACITY) {
+        dropped.incrementAndGet();
+        return -1;
+      }
+      if (claimed.compareAndSet(next, next + 1)) {
+        return next;
+      }
+    }
+  }
+
+  private static void publish(Slot slot, long sequence) {
+    slot.published = sequence + 1;
+    if (writerParked) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  private static void drainLoop() {
+    StringBuilder out = new StringBuilder();
+    StringBuilder err = new StringBuilder();
+    long reportedDrops = 0;
+    while (running || consumed < claimed.get()) {
+      long next = consumed;
+      Slot slot = RING[(int) (next & MASK)];
+      if (slot.published != next + 1) {
+        if (out.length() > 0 || err.length() > 0) {
+          flush(out, err);
+          continue;
+        }
+        long drops = dropped.get();
+        if (drops != reportedDrops) {
+          System.err.println("⚠️ " + (drops - reportedDrops) + " log messages dropped (log buffer full)");
+          reportedDrops = drops;
+        }
+        writerParked = true;
+        if (slot.published != next + 1 && running) {
+          LockSupport.parkNanos(10_000_000L);
+        }
+        writerParked = false;
+        continue;
+      }
+
+      StringBuilder target = slot.level.ordinal() >= Level.WARN.ordinal() ? err : out;
+      try {
+        format(target, slot);
+      } catch (RuntimeException e) {
+        target.append("(failed to format log message: ").append(e).append(')');
+      }
+      target.append(System.lineSeparator());
+      slot.template = null;
+      slot.arg0 = slot.arg1 = slot.arg2 = null;
+      slot.supplier = null;
+      consumed = next + 1;
+
+      if (out.length() > 64 * 1024 || err.length() > 64 * 1024) {
+        flush(out, err);
+      }
+    }
+    flush(out, err);
+  }
+
+  private static void flush(StringBuilder out, StringBuilder err) {
+    if (out.length() > 0) {
+      System.out.print(out);
+      System.out.flush();
+      out.setLength(0);
+    }
+    if (err.length() > 0) {
+      System.err.print(err);
+      System.err.flush();
+      err.setLength(0);
+    }
+  }
+
+  private static void format(StringBuilder sb, Slot slot) {
+    if (slot.supplier != null) {
+      sb.append(slot.supplier.get());
+      return;
+    }
+    String template = slot.template;
+    int used = 0;
+    int from = 0;
+    int at;
+    while (used < slot.argCount && (at = template.indexOf("{}", from)) >= 0) {
+      sb.append(template, from, at).append(arg(slot, used++));
+      from = at + 2;
+    }
+    sb.append(template, from, template.length());
+    if (used < slot.argCount && arg(slot, slot.argCount - 1) instanceof Throwable) {
+      StringWriter trace = new StringWriter();
+      ((Throwable) arg(slot, slot.argCount - 1)).printStackTrace(new PrintWriter(trace));
+      sb.append(System.lineSeparator()).append(trace.toString().stripTrailing());
+    }
+  }
+
+  private static Object arg(Slot slot, int index) {
+    switch (index) {
+      case 0: return slot.arg0;
+      case 1: return slot.arg1;
+      default: return slot.arg2;
+    }
+  }
+
+  /**
+   * Stops the writer after it has written everything queued so far.
+   */
+  static void shutdown() {
+    running = false;
+    LockSupport.unpark(writer);
+    try {
+      writer.join(2000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static Level parseLevel(String value) {
+    try {
+      return Level.valueOf(value.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return Level.INFO;
+    }
+  }
+}
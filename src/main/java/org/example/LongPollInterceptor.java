@@ -0,0 +1,151 @@
+package org.example;
+
+import io.grpc.Context;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.netty.NettyServerBuilder;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightServerMiddleware;
+import org.apache.arrow.flight.PollInfo;
+import org.apache.arrow.flight.grpc.ServerInterceptorAdapter;
+import org.apache.arrow.flight.grpc.StatusUtils;
+import org.apache.arrow.flight.impl.Flight;
+import org.apache.arrow.flight.impl.FlightServiceGrpc;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * Answers long polls without holding a thread.
+ *
+ * Flight's FlightProducer.pollFlightInfo has to return its PollInfo on the handler
+ * thread, so a long poll served through it blocks that thread for the whole wait. This
+ * interceptor takes over the pollFlightInfo calls that ask for a wait (see
+ * {@link LongPollMiddleware}): it hands the descriptor to a {@link Handler} and sends
+ * the PollInfo whenever the handler's future completes. Calls without a wait go to
+ * Flight as usual. It runs inside Flight's middleware, so metrics and response headers
+ * still apply to every call.
+ */
+final class LongPollInterceptor implements ServerInterceptor {
+
+  /** Serves one long poll. */
+  interface Handler {
+    /**
+     * @return completes with the PollInfo to send, or exceptionally with a
+     *         FlightRuntimeException; cancelled if the client goes away first
+     */
+    CompletableFuture<PollInfo> longPoll(FlightDescriptor descriptor, long waitMs);
+  }
+
+  private static final String METHOD = FlightServiceGrpc.getPollFlightInfoMethod().getFullMethodName();
+
+  private final Handler handler;
+
+  private LongPollInterceptor(Handler handler) {
+    this.handler = handler;
+  }
+
+  /**
+   * For {@code FlightServer.Builder.transportHint("grpc.builderConsumer", ...)}; the
+   * server needs {@link LongPollMiddleware} as well.
+   */
+  static Consumer<NettyServerBuilder> consumer(Handler handler) {
+    return netty -> netty.intercept(new LongPollInterceptor(handler));
+  }
+
+  @Override
+  public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                               ServerCallHandler<ReqT, RespT> next) {
+    long waitMs = METHOD.equals(call.getMethodDescriptor().getFullMethodName()) ? requestedWaitMs() : 0;
+    if (waitMs <= 0) {
+      return next.startCall(call, headers);
+    }
+    // Unary: one request, plus room to notice a second one
+    call.request(2);
+    return new ServerCall.Listener<ReqT>() {
+      // gRPC delivers listener callbacks one at a time
+      private ReqT request;
+      private CompletableFuture<PollInfo> response;
+      private boolean rejected;
+
+      @Override
+      public void onMessage(ReqT message) {
+        if (request != null) {
+          rejected = true;
+          call.close(Status.INTERNAL.withDescription("Too many requests"), new Metadata());
+          return;
+        }
+        request = message;
+      }
+
+      @Override
+      public void onHalfClose() {
+        if (rejected) {
+          return;
+        }
+        if (request == null) {
+          call.close(Status.INTERNAL.withDescription("Half-closed without a request"), new Metadata());
+          return;
+        }
+        FlightDescriptor descriptor;
+        try {
+          descriptor = FlightDescriptor.deserialize(((Flight.FlightDescriptor) request).toByteString().asReadOnlyByteBuffer());
+        } catch (IOException e) {
+          reply(call, null, CallStatus.INVALID_ARGUMENT.withDescription("Bad descriptor").toRuntimeException());
+          return;
+        }
+        try {
+          response = handler.longPoll(descriptor, waitMs);
+        } catch (RuntimeException e) {
+          reply(call, null, e);
+          return;
+        }
+        response.whenComplete((info, error) -> reply(call, info, error));
+      }
+
+      @Override
+      public void onCancel() {
+        if (response != null) {
+          response.cancel(false);
+        }
+      }
+    };
+  }
+
+  /** The wait asked for in the call's header, already capped by {@link LongPollMiddleware}. */
+  private static long requestedWaitMs() {
+    Map<FlightServerMiddleware.Key<?>, FlightServerMiddleware> middleware =
+        ServerInterceptorAdapter.SERVER_MIDDLEWARE_KEY.get(Context.current());
+    FlightServerMiddleware longPoll = middleware == null ? null : middleware.get(LongPollMiddleware.KEY);
+    return longPoll instanceof LongPollMiddleware ? ((LongPollMiddleware) longPoll).waitMs() : 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <RespT> void reply(ServerCall<?, RespT> call, PollInfo info, Throwable error) {
+    if (error instanceof CancellationException) {
+      return; // The client went away
+    }
+    try {
+      if (error != null) {
+        Throwable grpcError = StatusUtils.toGrpcException(error instanceof CompletionException ? error.getCause() : error);
+        Metadata trailers = Status.trailersFromThrowable(grpcError);
+        call.close(Status.fromThrowable(grpcError), trailers == null ? new Metadata() : trailers);
+        return;
+      }
+      call.sendHeaders(new Metadata());
+      call.sendMessage((RespT) Flight.PollInfo.parseFrom(info.serialize()));
+      call.close(Status.OK, new Metadata());
+    } catch (IOException | RuntimeException e) {
+      // Typically the call was cancelled while the reply was being sent
+      Log.debug("⚠️ Could not answer long poll: {}", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package org.example;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallInfo;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightMethod;
+import org.apache.arrow.flight.FlightServerMiddleware;
+import org.apache.arrow.flight.RequestContext;
+
+/**
+ * Reads the long-poll request header on pollFlightInfo calls.
+ *
+ * A client that sends {@code x-flight-poll-wait-ms: N} asks the server to hold the
+ * poll for up to N ms until the query makes progress or completes. The wait is
+ * capped at flight.poll.maxWaitMs, which must stay well below the NLB idle timeout;
+ * the cap is echoed in {@code x-flight-poll-max-wait-ms} so clients can tell the
+ * server supports long polls. The wait itself is served by {@link LongPollInterceptor}.
+ */
+final class LongPollMiddleware implements FlightServerMiddleware {
+  static final Key<LongPollMiddleware> KEY = Key.of("long-poll");
+  static final String WAIT_HEADER = "x-flight-poll-wait-ms";
+  static final String MAX_WAIT_HEADER = "x-flight-poll-max-wait-ms";
+
+  static final class Factory implements FlightServerMiddleware.Factory<LongPollMiddleware> {
+    private final long maxWaitMs;
+
+    Factory(long maxWaitMs) {
+      this.maxWaitMs = maxWaitMs;
+    }
+
+    @Override
+    public LongPollMiddleware onCallStarted(CallInfo info, CallHeaders incomingHeaders, RequestContext context) {
+      if (info.method() != FlightMethod.POLL_FLIGHT_INFO) {
+        return new LongPollMiddleware(0, -1);
+      }
+      long waitMs = 0;
+      String requested = incomingHeaders.get(WAIT_HEADER);
+      if (requested != null) {
+        try {
+          waitMs = Math.max(0, Math.min(maxWaitMs, Long.parseLong(requested.trim())));
+        } catch (NumberFormatException e) {
+          throw CallStatus.INVALID_ARGUMENT
+              .withDescription("Invalid " + WAIT_HEADER + ": " + requested)
+              .toRuntimeException();
+        }
+      }
+      return new LongPollMiddleware(waitMs, maxWaitMs);
+    }
+  }
+
+  private final long waitMs;
+  private final long maxWaitMs; // -1 on calls other than pollFlightInfo
+
+  private LongPollMiddleware(long waitMs, long maxWaitMs) {
+    this.waitMs = waitMs;
+    this.maxWaitMs = maxWaitMs;
+  }
+
+  /** How long this call may wait for a change, in ms (0 = answer immediately). */
+  long waitMs() {
+    return waitMs;
+  }
+
+  @Override
+  public void onBeforeSendingHeaders(CallHeaders outgoingHeaders) {
+    if (maxWaitMs >= 0) {
+      outgoingHeaders.insert(MAX_WAIT_HEADER, Long.toString(maxWaitMs));
+    }
+  }
+
+  @Override
+  public void onCallCompleted(CallStatus status) {
+  }
+
+  @Override
+  public void onCallErrored(Throwable err) {
+  }
+}
@@ -2,18 +2,37 @@ package org.example;
 
 import org.apache.arrow.flight.*;
 import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.OutOfMemoryException;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.IntVector;
-import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.message.IpcOption;
 import org.apache.arrow.vector.types.pojo.Schema;
 import org.apache.arrow.vector.types.pojo.Field;
 import org.apache.arrow.vector.types.pojo.FieldType;
 import org.apache.arrow.vector.types.pojo.ArrowType;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.time.Instant;
 
 public class Main {
@@ -28,12 +47,20 @@ public class Main {
   }
 
   private static void runServer() throws Exception {
-    int port = 8815;
-
-    try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
-      Location location = Location.forGrpcInsecure("0.0.0.0", port);
-
-      try (FlightServer server = FlightServer.builder(allocator, location, new SampleFlightProducer(allocator)).build()) {
+    ServerConfig config = ServerConfig.fromSystemProperties();
+    int port = config.port;
+
+    try (BufferAllocator allocator = new RootAllocator(config.memoryMaxBytes)) {
+      Location location = Location.forGrpcInsecure(config.host, port);
+
+      try (SampleFlightProducer producer = new SampleFlightProducer(allocator, config);
+           FlightServer server = FlightServer.builder(allocator, location, producer)
+               .middleware(MetricsMiddleware.KEY, new MetricsMiddleware.Factory(producer.metrics()))
+               .middleware(LongPollMiddleware.KEY, new LongPollMiddleware.Factory(config.pollMaxWaitMs))
+               .middleware(CompressionMiddleware.KEY, new CompressionMiddleware.Factory())
+               .transportHint("grpc.builderConsumer",
+                   LongPollInterceptor.consumer(producer).andThen(BatchCompression.serverConsumer()))
+               .build()) {
         server.start();
         System.out.println("Flight server started on port " + server.getPort());
         System.out.println("Press Ctrl+C to stop the server");
@@ -55,7 +82,7 @@ public class Main {
         System.out.println("Listing flights:");
         client.listFlights(new Criteria(new byte[0])).forEach(info -> {
           System.out.println("Found flight: " + info.getDescriptor());
-          System.out.println("Schema: " + info.getSchema());
+          System.out.println("Schema: " + info.getSchemaOptional().orElse(null));
         });
 
         // Get flight info
@@ -65,25 +92,8 @@ public class Main {
 
         // Get data from the server
         System.out.println("Getting data stream:");
-        Ticket ticket = info.getEndpoints().get(0).getTicket();
-        try (FlightStream stream = client.getStream(ticket)) {
-          Schema schema = stream.getSchema();
-          System.out.println("Stream schema: " + schema);
-
-          while (stream.next()) {
-            VectorSchemaRoot root = stream.getRoot();
-            IntVector valueVector = (IntVector) root.getVector("value");
-
-            System.out.println("Received batch with " + root.getRowCount() + " rows:");
-            for (int i = 0; i < root.getRowCount(); i++) {
-              if (valueVector.isNull(i)) {
-                System.out.println("  Row " + i + ": null");
-              } else {
-                System.out.println("  Row " + i + ": " + valueVector.get(i));
-              }
-            }
-          }
-        }
+        System.out.println("Stream schema: " + info.getSchemaOptional().orElse(null));
+        ParallelFetcher.fetchAndPrint(client, info, "");
 
         // Do an action
         System.out.println("Performing action:");
@@ -97,66 +107,167 @@ public class Main {
   /**
    * Sample Flight Producer implementation that provides sample data
    */
-  static class SampleFlightProducer extends NoOpFlightProducer {
+  static class SampleFlightProducer extends NoOpFlightProducer
+      implements LongPollInterceptor.Handler, AutoCloseable {
     private final BufferAllocator allocator;
     private final Schema schema;
+    private final QueryExecutor queryExecutor;
+    private final ScheduledExecutorService streamTimer;
+    private final long sampleDelayMs;
+    private final int defaultBatchRows;
+    private final int maxBatchRows;
+    private final ResultCache resultCache;
+    private final CallAllocators callAllocators;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final Location endpointLocation;
+
+    // Default result sizes when the ticket does not ask for a row count
+    private static final long SAMPLE_ROWS = 10;
+    private static final long RESULT_ROWS = 100;
+
+    // Simulated duration of each long-running query type
+    private static final Map<String, Long> QUERY_DURATIONS_MS = Map.of(
+        "medium-query", 60000L,      // 1 minute (completes before 65s polling)
+        "long-query", 120000L,       // 2 minutes
+        "very-long-query", 300000L,  // 5 minutes
+        "ultra-long-query", 7200000L // 2 hours (exceeds NLB timeout)
+    );
 
     // Query state management for polling
     private final ConcurrentHashMap<String, QueryState> runningQueries = new ConcurrentHashMap<>();
     private final AtomicLong queryIdCounter = new AtomicLong(0);
+    private final AtomicInteger outstandingQueries = new AtomicInteger();
+    private final int maxOutstandingQueries;
+    // Evicts queries nobody came back for, e.g. clients that died behind the NLB
+    private final TimingWheel<QueryState> expiryWheel;
+    // Admission limit for parked long polls; a parked poll holds no thread
+    private final Semaphore longPollSlots;
+    private final long pollMinIntervalMs;
+    private final long pollMaxIntervalMs;
+    private final long subscribeHeartbeatMs;
+    private final long partitionMs;
+    private final long partitionRows;
+    private final int maxPartitions;
 
     static class QueryState {
       final String queryId;
-      final long startTime;
+      final long createdTime;
+      volatile long startTime; // set when the query executor actually starts the query
       final long estimatedDuration; // in milliseconds
       final String originalPath;
       volatile double progress;
       volatile boolean completed;
+      volatile boolean cancelled; // set before the query is removed, so waiters can tell why
+      volatile FlightRuntimeException failure; // likewise, if the query failed
       volatile FlightInfo result;
+      // Finished partitions of the result, in row order; clients can fetch these while it runs
+      final List<FlightEndpoint> partitions = new CopyOnWriteArrayList<>();
+      volatile QueryExecutor.QueryHandle handle;
+      volatile TimingWheel<QueryState>.Timeout expiryTimeout;
+      BufferAllocator allocator; // working memory of the query, closed once its task has stopped
       final long expirationTime;
+      // Completed (and replaced) whenever progress moves, the query finishes or it is removed
+      private final AtomicReference<CompletableFuture<Void>> changed =
+          new AtomicReference<>(new CompletableFuture<>());
 
       QueryState(String queryId, String originalPath, long estimatedDuration) {
         this.queryId = queryId;
         this.originalPath = originalPath;
-        this.startTime = System.currentTimeMillis();
+        this.createdTime = System.currentTimeMillis();
         this.estimatedDuration = estimatedDuration;
         this.progress = 0.0;
         this.completed = false;
-        this.expirationTime = startTime + (estimatedDuration * 2); // Expire after 2x estimated duration
+        this.expirationTime = createdTime + (estimatedDuration * 2); // Expire after 2x estimated duration
+      }
+
+      void markStarted() {
+        startTime = System.currentTimeMillis();
       }
 
       void updateProgress() {
-        if (!completed) {
+        // Only the worker marks the query completed, once the result is in place;
+        // a queued query (startTime == 0) reports no progress
+        if (!completed && startTime > 0) {
           long elapsed = System.currentTimeMillis() - startTime;
-          progress = Math.min(1.0, (double) elapsed / estimatedDuration);
-          if (progress >= 1.0) {
-            completed = true;
-          }
+          progress = Math.min(0.99, (double) elapsed / estimatedDuration);
         }
       }
 
       boolean isExpired() {
         return System.currentTimeMillis() > expirationTime;
       }
+
+      /** Extrapolated from progress so far; a queued query is assumed to start now. */
+      long estimatedCompletionMillis() {
+        long now = System.currentTimeMillis();
+        if (startTime == 0 || progress <= 0) {
+          return Math.max(now, (startTime == 0 ? now : startTime) + estimatedDuration);
+        }
+        return Math.max(now, startTime + (long) ((now - startTime) / progress));
+      }
+
+      /** Completes on the next change; take it before checking the state so no change is missed. */
+      CompletableFuture<Void> nextChange() {
+        return changed.get();
+      }
+
+      void signalChange() {
+        changed.getAndSet(new CompletableFuture<>()).complete(null);
+      }
+
+      /** Why a query that was removed before its result was collected is gone. */
+      FlightRuntimeException goneError() {
+        if (cancelled) {
+          return CallStatus.CANCELLED.withDescription("Query cancelled: " + queryId).toRuntimeException();
+        }
+        return failure != null ? failure
+            : CallStatus.NOT_FOUND.withDescription("Query no longer available: " + queryId).toRuntimeException();
+      }
     }
 
 
 
     public SampleFlightProducer(BufferAllocator allocator) {
+      this(allocator, ServerConfig.fromSystemProperties());
+    }
+
+    public SampleFlightProducer(BufferAllocator allocator, ServerConfig config) {
       this.allocator = allocator;
+      this.endpointLocation = config.endpointLocation();
+      this.queryExecutor = new QueryExecutor(config);
+      this.streamTimer = Executors.newScheduledThreadPool(config.streamTimerThreads,
+          new QueryExecutor.NamedThreadFactory("stream-timer"));
+      this.sampleDelayMs = config.sampleDelayMs;
+      this.defaultBatchRows = config.defaultBatchRows;
+      this.maxBatchRows = config.maxBatchRows;
+      this.resultCache = new ResultCache(allocator, config);
+      this.callAllocators = new CallAllocators(allocator, config, streamTimer);
+      this.maxOutstandingQueries = config.maxOutstandingQueries;
+      this.expiryWheel = new TimingWheel<>("query-sweeper", config.querySweepTickMs, 512, this::expireQuery);
+      this.longPollSlots = new Semaphore(config.pollMaxWaiters);
+      this.pollMinIntervalMs = config.pollMinIntervalMs;
+      this.pollMaxIntervalMs = config.pollMaxIntervalMs;
+      this.subscribeHeartbeatMs = config.subscribeHeartbeatMs;
+      this.partitionMs = config.queryPartitionMs;
+      this.partitionRows = Math.max(1, config.partitionRows);
+      this.maxPartitions = Math.max(1, config.maxPartitions);
       // Create a simple schema with one integer field
       this.schema = new Schema(Arrays.asList(
           new Field("value", FieldType.nullable(new ArrowType.Int(32, true)), null)
       ));
     }
 
+    ServerMetrics metrics() {
+      return metrics;
+    }
+
     @Override
     public void listFlights(CallContext context, Criteria criteria, StreamListener<FlightInfo> listener) {
       // Create flight info for normal sample data
       FlightDescriptor descriptor1 = FlightDescriptor.path("sample");
       FlightEndpoint endpoint1 = new FlightEndpoint(
           new Ticket("sample".getBytes()),
-          Location.forGrpcInsecure("localhost", 8815)
+          endpointLocation
       );
 
       FlightInfo flightInfo1 = new FlightInfo(
@@ -171,7 +282,7 @@ public class Main {
       FlightDescriptor descriptor2 = FlightDescriptor.path("sample-delay");
       FlightEndpoint endpoint2 = new FlightEndpoint(
           new Ticket("sample-delay".getBytes()),
-          Location.forGrpcInsecure("localhost", 8815)
+          endpointLocation
       );
 
       FlightInfo flightInfo2 = new FlightInfo(
@@ -233,190 +344,190 @@ public class Main {
     @Override
     public FlightInfo getFlightInfo(CallContext context, FlightDescriptor descriptor) {
       if (descriptor.getPath().size() == 1) {
-        String flightPath = descriptor.getPath().get(0);
+        // The path may carry result parameters, e.g. "sample?rows=100000000&batch=65536"
+        TicketSpec spec = TicketSpec.parse(descriptor.getPath().get(0));
+        String flightPath = spec.name;
 
         // Handle regular flights
         if ("sample".equals(flightPath) || "sample-delay".equals(flightPath)) {
-          FlightEndpoint endpoint = new FlightEndpoint(
-              new Ticket(flightPath.getBytes()),
-              Location.forGrpcInsecure("localhost", 8815)
-          );
-
+          long rows = spec.rowsOr(SAMPLE_ROWS);
           return new FlightInfo(
               schema,
               descriptor,
-              Collections.singletonList(endpoint),
+              partitionEndpoints(spec, rows),
               -1, // Unknown number of bytes
-              10  // 10 rows
+              rows,
+              true, // Partitions are in row order
+              IpcOption.DEFAULT
           );
         }
 
-        // Handle long-running queries - simulate the delay in getFlightInfo
-        if ("long-query".equals(flightPath)) {
-          return handleLongRunningQuery(flightPath, 120); // 2 minutes
-        } else if ("very-long-query".equals(flightPath)) {
-          return handleLongRunningQuery(flightPath, 300); // 5 minutes
-        } else if ("ultra-long-query".equals(flightPath)) {
-          return handleLongRunningQuery(flightPath, 7200); // 2 hours (exceeds NLB timeout)
+        // Handle long-running queries - start them on the query executor and redirect the
+        // client to poll, instead of holding the gRPC handler thread for the whole run
+        if (QUERY_DURATIONS_MS.containsKey(flightPath)) {
+          QueryState queryState = launchQuery(spec, QUERY_DURATIONS_MS.get(flightPath));
+          return pollRedirectInfo(queryState);
+        }
+
+        // Check on a query started earlier (via getFlightInfo or pollFlightInfo)
+        if (flightPath.startsWith("poll-query-")) {
+          QueryState queryState = runningQueries.get(flightPath);
+          if (queryState == null) {
+            throw CallStatus.NOT_FOUND.withDescription("Query not found: " + flightPath).toRuntimeException();
+          }
+          if (!queryState.completed) {
+            return pollRedirectInfo(queryState);
+          }
+          removeQuery(queryState); // Result collected, same as the poll path
+          return queryState.result;
         }
       }
       throw CallStatus.NOT_FOUND.withDescription("Flight not found: " + descriptor).toRuntimeException();
     }
 
-    private FlightInfo handleLongRunningQuery(String queryType, int durationSeconds) {
-      System.out.println("🚀 Starting long-running query: " + queryType + " (duration: " + durationSeconds + "s)");
-      System.out.println("⏰ This will simulate a heavy query that takes " + (durationSeconds / 60.0) + " minutes...");
-
-      long startTime = System.currentTimeMillis();
-      long endTime = startTime + (durationSeconds * 1000L);
-
-      // Simulate query execution with progress updates
-      int progressUpdates = Math.min(10, durationSeconds / 10); // Update every 10% or 10 seconds
-      long updateInterval = (durationSeconds * 1000L) / progressUpdates;
-
-      try {
-        for (int i = 1; i <= progressUpdates; i++) {
-          Thread.sleep(updateInterval);
-          double progress = (double) i / progressUpdates * 100;
-          System.out.println("📊 Query progress: " + String.format("%.1f%%", progress) +
-                           " (elapsed: " + (i * updateInterval / 1000) + "s)");
-        }
-
-        System.out.println("✅ Long-running query completed!");
-
-        // Return FlightInfo for the completed query
-        FlightEndpoint endpoint = new FlightEndpoint(
-            new Ticket((queryType + "-result").getBytes()),
-            Location.forGrpcInsecure("localhost", 8815)
-        );
-
-        return new FlightInfo(
-            schema,
-            FlightDescriptor.path(queryType),
-            Collections.singletonList(endpoint),
-            -1, // Unknown number of bytes
-            100 // More rows for long query result
-        );
-
-      } catch (InterruptedException e) {
-        System.out.println("⚠️ Long-running query was interrupted");
-        Thread.currentThread().interrupt();
-        throw CallStatus.CANCELLED.withDescription("Query was interrupted").toRuntimeException();
+    /**
+     * Splits a result into partition tickets (one per flight.stream.partitionRows rows, at
+     * most flight.stream.maxPartitions, or as many as the descriptor asks for) that clients
+     * can fetch in parallel over separate streams. A single partition keeps the plain ticket.
+     */
+    private List<FlightEndpoint> partitionEndpoints(TicketSpec spec, long rows) {
+      long wanted = spec.partitions != TicketSpec.DEFAULT ? spec.partitions : (rows + partitionRows - 1) / partitionRows;
+      int partitions = (int) Math.max(1, Math.min(Math.min(wanted, maxPartitions), rows));
+      if (partitions == 1) {
+        return Collections.singletonList(new FlightEndpoint(
+            spec.withRange(spec.offset, spec.rows).toTicket(), endpointLocation));
+      }
+      List<FlightEndpoint> endpoints = new ArrayList<>(partitions);
+      for (int i = 0; i < partitions; i++) {
+        long first = rows * i / partitions;
+        long end = rows * (i + 1) / partitions;
+        endpoints.add(new FlightEndpoint(
+            spec.withRange(spec.offset + first, end - first).toTicket(),
+            endpointLocation
+        ));
       }
+      return endpoints;
+    }
+
+    /**
+     * FlightInfo for a query that is still running: no endpoints, and a descriptor the
+     * client can pass to pollFlightInfo (or getFlightInfo) to follow the query.
+     */
+    private FlightInfo pollRedirectInfo(QueryState queryState) {
+      Log.debug("↪️ Redirecting getFlightInfo to poll query: {}", queryState.queryId);
+      return new FlightInfo(
+          schema,
+          FlightDescriptor.path(queryState.queryId),
+          Collections.emptyList(), // No endpoints - use PollFlightInfo
+          -1, // Unknown number of bytes
+          -1  // Unknown number of records
+      );
     }
 
     @Override
     public void getStream(CallContext context, Ticket ticket, ServerStreamListener listener) {
       String ticketString = new String(ticket.getBytes());
+      TicketSpec spec;
+      try {
+        spec = TicketSpec.parse(ticketString);
+      } catch (FlightRuntimeException e) {
+        listener.error(e);
+        return;
+      }
+      String ticketName = spec.name;
+      int batchSize = Math.min(spec.batchSizeOr(defaultBatchRows), maxBatchRows);
+      selectCompression(context, spec);
+
+      if ("sample".equals(ticketName) || "sample-delay".equals(ticketName)) {
+        Log.debug("🔄 getStream called for ticket: {}", ticketString);
+
+        // The delay is a timer, not a sleep: no handler thread is held while the client waits,
+        // and a cancellation during the wait is noticed immediately. A resumed stream has
+        // already waited once.
+        long delayMs = "sample-delay".equals(ticketName) && !spec.isResume() ? sampleDelayMs : 0;
+        if (delayMs > 0) {
+          Log.debug("⏰ Delay requested - Sending data in {} seconds...", delayMs / 1000);
+        }
 
-      if ("sample".equals(ticketString) || "sample-delay".equals(ticketString)) {
-        System.out.println("🔄 getStream called for ticket: " + ticketString);
-
-        // Check if delay is requested
-        boolean shouldDelay = "sample-delay".equals(ticketString);
-
-        try {
-          if (shouldDelay) {
-            System.out.println("⏰ Delay requested - Waiting 70 seconds before sending data...");
-            Thread.sleep(70000);
-
-            // Check if listener was cancelled during the wait
-            boolean isCancelled = listener.isCancelled();
-            boolean isReady = listener.isReady();
-            System.out.println("📊 After 70 seconds - Listener cancelled: " + isCancelled);
-            System.out.println("📊 After 70 seconds - Listener isReady: " + isReady);
-
-            if (isCancelled) {
-              System.out.println("❌ Request was cancelled, not sending data");
-              return;
-            }
-          } else {
-            System.out.println("⚡ No delay requested - Sending data immediately");
-
-            // Check listener status without delay
-            boolean isCancelled = listener.isCancelled();
-            boolean isReady = listener.isReady();
-            System.out.println("📊 Listener cancelled: " + isCancelled);
-            System.out.println("📊 Listener isReady: " + isReady);
-          }
-
-          System.out.println("✅ Proceeding to send data...");
-
-          // Create sample data
-          try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
-            IntVector valueVector = (IntVector) root.getVector("value");
-
-            // Generate 10 rows of sample data
-            valueVector.allocateNew(10);
-
-            for (int i = 0; i < 10; i++) {
-              valueVector.set(i, i * 10); // Values: 0, 10, 20, 30, ..., 90
-            }
-
-            valueVector.setValueCount(10);
-            root.setRowCount(10);
-
-            System.out.println("📤 Starting data stream...");
-            listener.start(root);
-
-            System.out.println("📤 Sending data batch...");
-            listener.putNext();
-
-            System.out.println("✅ Data stream completed");
-            listener.completed();
-          }
-        } catch (InterruptedException e) {
-          System.out.println("⚠️ Thread was interrupted during wait");
-          Thread.currentThread().interrupt();
-          listener.error(new RuntimeException("Stream interrupted", e));
-        } catch (Exception e) {
-          System.out.println("❌ Error in getStream: " + e.getMessage());
-          listener.error(e);
+        // Values: 0, 10, 20, 30, ..., 90 for the default 10 rows
+        long rows = spec.rowsOr(SAMPLE_ROWS);
+        if (spec.resumeRow > rows) {
+          listener.error(CallStatus.INVALID_ARGUMENT.withDescription("Resume past the end: " + ticketString).toRuntimeException());
+          return;
         }
-      } else if (ticketString.endsWith("-result")) {
+        AsyncStreamWriter.start(ticketString, listener, streamTimer, delayMs,
+            resultSource(spec, rows, batchSize, 10), context.getMiddleware(MetricsMiddleware.KEY));
+      } else if (ticketName.endsWith("-result")) {
         // Handle query result tickets
-        System.out.println("📊 getStream called for query result: " + ticketString);
-
-        try {
-          // Send larger dataset for query results (100 rows)
-          try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
-            IntVector valueVector = (IntVector) root.getVector("value");
-
-            valueVector.allocateNew(100);
+        Log.debug("📊 getStream called for query result: {}", ticketString);
 
-            for (int i = 0; i < 100; i++) {
-              valueVector.set(i, i * 5); // Values: 0, 5, 10, 15, ..., 495
-            }
-
-            valueVector.setValueCount(100);
-            root.setRowCount(100);
-
-            System.out.println("📤 Starting query result stream (100 rows)...");
-            listener.start(root);
-
-            System.out.println("📤 Sending query result batch...");
-            listener.putNext();
-
-            System.out.println("✅ Query result stream completed");
-            listener.completed();
-          }
-        } catch (Exception e) {
-          System.out.println("❌ Error in query result stream: " + e.getMessage());
-          listener.error(e);
+        // Send larger dataset for query results (100 rows by default), values: 0, 5, 10, 15, ..., 495
+        long rows = spec.rowsOr(RESULT_ROWS);
+        if (spec.resumeRow > rows) {
+          listener.error(CallStatus.INVALID_ARGUMENT.withDescription("Resume past the end: " + ticketString).toRuntimeException());
+          return;
         }
+        AsyncStreamWriter.start(ticketString, listener, streamTimer, 0,
+            resultSource(spec, rows, batchSize, 5), context.getMiddleware(MetricsMiddleware.KEY));
       } else {
-        System.out.println("❌ Unknown ticket: " + ticketString);
+        Log.debug("❌ Unknown ticket: {}", ticketString);
         listener.error(CallStatus.NOT_FOUND.withDescription("Ticket not found: " + ticketString).toRuntimeException());
       }
     }
 
+    /**
+     * Picks the compression for a DoGet: the ticket's compression parameter if it has one,
+     * else the x-flight-compression header, else none. It only applies if the client
+     * accepts the codec (see {@link CompressionMiddleware}).
+     */
+    private static void selectCompression(CallContext context, TicketSpec spec) {
+      CompressionMiddleware middleware = context.getMiddleware(CompressionMiddleware.KEY);
+      if (middleware == null) {
+        return;
+      }
+      String requested = spec.compression != null ? spec.compression : middleware.compression();
+      middleware.compressResponse(requested == null ? null : BatchCompression.encoding(requested));
+    }
+
+    /**
+     * Serves small results from the result cache (built on first use) and generates
+     * large ones on the fly through a reused root. Either way the stream's vectors
+     * live in a call allocator limited by flight.memory.callLimitBytes.
+     *
+     * A resumed ticket starts after the rows the client already has: a cached result
+     * skips whole batches by index, a generated one starts generating at the resume row,
+     * so the skipped part is never rebuilt.
+     */
+    private Supplier<AsyncStreamWriter.BatchSource> resultSource(TicketSpec spec, long rows, int batchSize, int step) {
+      // A resumed or differently compressed stream shares the cache entry
+      String key = spec.withResume(0, 0).withCompression(null).encode();
+      // Cached batches are all batchSize rows but the last, so a batch boundary is easy to check
+      boolean batchAligned = spec.resumeRow == spec.resumeBatch * batchSize;
+      if (resultCache.accepts(rows * Integer.BYTES) && batchAligned) {
+        return () -> callAllocators.openSource(CallAllocators.GET_STREAM, key,
+            callAllocator -> resultCache.openStream(key, schema, callAllocator,
+                cacheAllocator -> new SequenceBatchSource(schema, cacheAllocator, spec.offset, rows, batchSize, step, false),
+                spec.resumeBatch));
+      }
+      long first = spec.offset + spec.resumeRow;
+      long remaining = rows - spec.resumeRow;
+      return () -> callAllocators.openSource(CallAllocators.GET_STREAM, key,
+          callAllocator -> new SequenceBatchSource(schema, callAllocator, first, remaining, batchSize, step, true));
+    }
+
     @Override
     public PollInfo pollFlightInfo(CallContext context, FlightDescriptor descriptor) {
+      return poll(descriptor);
+    }
+
+    /** Answers a poll at once; long polls go through {@link #longPoll} instead. */
+    private PollInfo poll(FlightDescriptor descriptor) {
       try {
-        System.out.println("🔄 pollFlightInfo called for: " + descriptor.getPath());
+        Log.debug("🔄 pollFlightInfo called for: {}", descriptor.getPath());
 
         if (descriptor.getPath().size() == 1) {
-          String path = descriptor.getPath().get(0);
+          TicketSpec spec = TicketSpec.parse(descriptor.getPath().get(0));
+          String path = spec.name;
 
           // Check if this is a query ID (starts with "poll-query-")
           if (path.startsWith("poll-query-")) {
@@ -424,101 +535,236 @@ public class Main {
           }
 
           // Handle new long-running query requests
-          if ("long-query".equals(path)) {
-            return startPollQuery(path, 120000); // 2 minutes
-          } else if ("very-long-query".equals(path)) {
-            return startPollQuery(path, 300000); // 5 minutes
-          } else if ("ultra-long-query".equals(path)) {
-            return startPollQuery(path, 7200000); // 2 hours (exceeds NLB timeout)
-          } else if ("medium-query".equals(path)) {
-          return startPollQuery(path, 60000); // 1 minute (completes before 65s polling)
-        }
+          Long durationMs = QUERY_DURATIONS_MS.get(path);
+          if (durationMs != null) {
+            return startPollQuery(spec, durationMs);
+          }
         }
 
         throw CallStatus.NOT_FOUND.withDescription("Unknown poll descriptor: " + descriptor).toRuntimeException();
+      } catch (FlightRuntimeException e) {
+        // NOT_FOUND, RESOURCE_EXHAUSTED etc. go back to the client unchanged
+        throw e;
       } catch (Exception e) {
-        System.err.println("❌ Error in pollFlightInfo: " + e.getMessage());
-        e.printStackTrace();
+        Log.error("❌ Error in pollFlightInfo: {}", e.getMessage(), e);
         throw CallStatus.INTERNAL.withDescription("Internal error: " + e.getMessage()).toRuntimeException();
       }
     }
 
-    private PollInfo startPollQuery(String originalPath, long durationMs) {
+    private PollInfo startPollQuery(TicketSpec spec, long durationMs) {
       try {
-        String queryId = "poll-query-" + queryIdCounter.incrementAndGet();
-        QueryState queryState = new QueryState(queryId, originalPath, durationMs);
-        runningQueries.put(queryId, queryState);
-
-        System.out.println("🚀 Started polling query: " + queryId + " (duration: " + (durationMs/1000) + "s)");
-
-        // Start background thread to simulate query execution
-        Thread queryThread = new Thread(() -> {
-          try {
-            int progressUpdates = Math.min(10, (int)(durationMs / 10000)); // Update every 10 seconds or 10%
-            long updateInterval = durationMs / progressUpdates;
-
-            for (int i = 1; i <= progressUpdates; i++) {
-              Thread.sleep(updateInterval);
-              queryState.updateProgress();
-              System.out.println("📊 Query " + queryId + " progress: " + String.format("%.1f%%", queryState.progress * 100));
-            }
-
-            queryState.completed = true;
-            System.out.println("✅ Polling query " + queryId + " completed!");
-
-            // Create result FlightInfo
-            FlightEndpoint endpoint = new FlightEndpoint(
-                new Ticket((queryId + "-result").getBytes()),
-                Location.forGrpcInsecure("localhost", 8815)
-            );
-
-            queryState.result = new FlightInfo(
-                schema,
-                FlightDescriptor.path(queryState.originalPath),
-                Collections.singletonList(endpoint),
-                -1, // Unknown number of bytes
-                100 // More rows for long query result
-            );
-
-          } catch (InterruptedException e) {
-            System.out.println("⚠️ Query " + queryId + " was interrupted");
-            Thread.currentThread().interrupt();
-          }
-        });
-
-        queryThread.start();
+        QueryState queryState = launchQuery(spec, durationMs);
+        String queryId = queryState.queryId;
 
         // Return initial PollInfo with partial FlightInfo (as per spec)
         FlightDescriptor pollDescriptor = FlightDescriptor.path(queryId);
 
-        System.out.println("📋 Creating initial PollInfo for query: " + queryId);
-        System.out.println("  pollDescriptor: " + pollDescriptor);
-
-        // Create initial FlightInfo with empty endpoints (query not complete yet)
-        FlightInfo initialFlightInfo = new FlightInfo(
-            schema,
-            FlightDescriptor.path(queryState.originalPath),
-            Collections.emptyList(), // No endpoints yet - query still running
-            -1, // Unknown number of bytes
-            -1  // Unknown number of records
-        );
+        Log.debug("📋 Creating initial PollInfo for query: {} (pollDescriptor: {})", queryId, pollDescriptor);
 
         PollInfo result = new PollInfo(
-            initialFlightInfo, // Partial FlightInfo (empty endpoints)
+            runningFlightInfo(queryState), // Partial FlightInfo (empty endpoints)
             pollDescriptor, // Client should poll with this descriptor
             Double.valueOf(0.0), // Initial progress
-            null // No expiration time initially
+            Instant.ofEpochMilli(queryState.expirationTime)
         );
 
-        System.out.println("📋 Successfully created PollInfo for query: " + queryId);
+        Log.debug("📋 Successfully created PollInfo for query: {}", queryId);
         return result;
+      } catch (FlightRuntimeException e) {
+        throw e;
       } catch (Exception e) {
-        System.err.println("❌ Error in startPollQuery: " + e.getMessage());
-        e.printStackTrace();
+        Log.error("❌ Error in startPollQuery: {}", e.getMessage(), e);
         throw new RuntimeException("Failed to start poll query", e);
       }
     }
 
+    /**
+     * Registers a new query and submits it to the query executor.
+     */
+    private QueryState launchQuery(TicketSpec spec, long durationMs) {
+      String originalPath = spec.name;
+      if (outstandingQueries.incrementAndGet() > maxOutstandingQueries) {
+        outstandingQueries.decrementAndGet();
+        throw CallStatus.RESOURCE_EXHAUSTED
+            .withDescription("Too many outstanding queries (" + maxOutstandingQueries + ")")
+            .toRuntimeException();
+      }
+      String queryId = "poll-query-" + queryIdCounter.incrementAndGet();
+      QueryState queryState = new QueryState(queryId, originalPath, durationMs);
+      queryState.allocator = callAllocators.open(CallAllocators.POLL_QUERY, queryId);
+      runningQueries.put(queryId, queryState);
+      queryState.expiryTimeout = expiryWheel.schedule(queryState, queryState.expirationTime);
+
+      Log.debug("🚀 Started polling query: {} (duration: {}s)", queryId, durationMs / 1000);
+
+      // Run the simulated query on the bounded query executor instead of a dedicated thread.
+      // Each step finishes one partition of the result: every 10 seconds or 10%, and at
+      // least every flight.query.partitionMs so long queries deliver their first rows early
+      int progressUpdates = (int) Math.max(1, Math.max(Math.min(10, durationMs / 10000), durationMs / partitionMs));
+      long updateInterval = durationMs / progressUpdates;
+      TicketSpec resultSpec = spec.withName(queryId + "-result");
+      long resultRows = spec.rowsOr(RESULT_ROWS);
+
+      QueryExecutor.QueryTask task = new QueryExecutor.QueryTask() {
+        private int step = 0;
+
+        @Override
+        public long runStep() {
+          if (step == 0) {
+            queryState.markStarted();
+            queryState.signalChange();
+          } else {
+            // Partition step-1 covers rows [(step-1)/n, step/n) of the result
+            long first = resultRows * (step - 1) / progressUpdates;
+            long end = resultRows * step / progressUpdates;
+            if (end > first) {
+              scanPartition(queryState.allocator, end - first);
+              queryState.partitions.add(new FlightEndpoint(
+                  resultSpec.withRange(first, end - first).toTicket(),
+                  endpointLocation
+              ));
+            }
+            queryState.updateProgress();
+            queryState.signalChange();
+            if (Log.isDebugEnabled()) {
+              Log.debug("📊 Query {} progress: {}%", queryId, Math.round((double) step / progressUpdates * 1000) / 10.0);
+            }
+          }
+
+          if (step < progressUpdates) {
+            step++;
+            return updateInterval;
+          }
+
+          // Create result FlightInfo from all partitions; their tickets keep the batch size asked for
+          queryState.result = new FlightInfo(
+              schema,
+              FlightDescriptor.path(queryState.originalPath),
+              new ArrayList<>(queryState.partitions),
+              -1, // Unknown number of bytes
+              resultRows, // More rows for long query result
+              true, // Partitions are in row order
+              IpcOption.DEFAULT
+          );
+          queryState.progress = 1.0;
+          queryState.completed = true;
+          queryState.signalChange();
+          Log.debug("✅ Polling query {} completed!", queryId);
+          return DONE;
+        }
+      };
+
+      try {
+        queryState.handle = queryExecutor.submit(originalPath, task);
+        queryState.handle.completion().whenComplete((ignored, error) -> queryStopped(queryState, error));
+      } catch (FlightRuntimeException e) {
+        removeQuery(queryState);
+        callAllocators.release(queryState.allocator);
+        Log.debug("⚠️ Rejected polling query {}: {}", queryId, e.getMessage());
+        throw e;
+      }
+
+      return queryState;
+    }
+
+    /**
+     * Stands in for the work of computing one partition: the rows pass through a vector
+     * in the query's allocator, so flight.memory.queryLimitBytes bounds what a query holds.
+     */
+    private static void scanPartition(BufferAllocator allocator, long rows) {
+      try (IntVector scratch = new IntVector("scan", allocator)) {
+        scratch.allocateNew((int) Math.min(rows, Integer.MAX_VALUE));
+        for (int i = 0; i < scratch.getValueCapacity(); i++) {
+          scratch.set(i, i);
+        }
+      }
+    }
+
+    /**
+     * Runs once the query's task has stopped, however it ended: releases the query's
+     * allocator, and removes a query that failed (e.g. went over flight.memory.queryLimitBytes)
+     * so its waiters get the error instead of waiting for it to expire.
+     */
+    private void queryStopped(QueryState queryState, Throwable error) {
+      callAllocators.release(queryState.allocator);
+      if (error == null || error instanceof CancellationException) {
+        return;
+      }
+      queryState.failure = error instanceof OutOfMemoryException
+          ? CallStatus.RESOURCE_EXHAUSTED.withDescription("Query " + queryState.queryId + " exceeded its memory limit")
+              .withCause(error).toRuntimeException()
+          : CallStatus.INTERNAL.withDescription("Query " + queryState.queryId + " failed: " + error.getMessage())
+              .withCause(error).toRuntimeException();
+      Log.warn("❌ Query {} failed: {}", queryState.queryId, error.getMessage());
+      removeQuery(queryState);
+    }
+
+    /**
+     * Forgets a query: drops it from runningQueries, cancels its expiry timeout and
+     * interrupts its worker if it is still running. Returns false if it was already gone.
+     */
+    private boolean removeQuery(QueryState queryState) {
+      if (!runningQueries.remove(queryState.queryId, queryState)) {
+        return false;
+      }
+      outstandingQueries.decrementAndGet();
+      TimingWheel<QueryState>.Timeout timeout = queryState.expiryTimeout;
+      if (timeout != null) {
+        timeout.cancel();
+      }
+      QueryExecutor.QueryHandle handle = queryState.handle;
+      if (handle != null) {
+        queryExecutor.cancel(handle);
+      }
+      queryState.signalChange(); // wake any long poll so it reports the query gone
+      return true;
+    }
+
+    /**
+     * Cancels a running or queued query: its task is interrupted and never rescheduled, its
+     * allocator is closed once the task has stopped and its memory has drained, and waiting
+     * polls and subscriptions are told it was cancelled. A completed query has nothing left
+     * to stop.
+     */
+    private CancelStatus cancelQuery(String queryId) {
+      QueryState queryState = runningQueries.get(queryId);
+      if (queryState == null || queryState.completed) {
+        return CancelStatus.NOT_CANCELLABLE;
+      }
+      queryState.cancelled = true;
+      if (!removeQuery(queryState)) {
+        return CancelStatus.NOT_CANCELLABLE;
+      }
+      Log.info("🛑 Cancelled query: {}", queryId);
+      return CancelStatus.CANCELLED;
+    }
+
+    /**
+     * The query behind a FlightInfo from getFlightInfo or pollFlightInfo: its descriptor
+     * while the query runs, otherwise its result tickets. Null if it isn't a poll query.
+     */
+    private static String queryIdOf(FlightInfo info) {
+      FlightDescriptor descriptor = info.getDescriptor();
+      if (descriptor != null && !descriptor.isCommand() && descriptor.getPath().size() == 1
+          && descriptor.getPath().get(0).startsWith("poll-query-")) {
+        return TicketSpec.parse(descriptor.getPath().get(0)).name;
+      }
+      for (FlightEndpoint endpoint : info.getEndpoints()) {
+        String name = TicketSpec.parse(endpoint.getTicket()).name;
+        if (name.startsWith("poll-query-") && name.endsWith("-result")) {
+          return name.substring(0, name.length() - "-result".length());
+        }
+      }
+      return null;
+    }
+
+    private void expireQuery(QueryState queryState) {
+      if (removeQuery(queryState)) {
+        Log.info("🧹 Evicted expired query: {} ({})", queryState.queryId,
+            queryState.completed ? "result never collected" : "still running");
+      }
+    }
+
     private PollInfo handleExistingPollQuery(String queryId) {
       QueryState queryState = runningQueries.get(queryId);
 
@@ -527,20 +773,94 @@ public class Main {
       }
 
       if (queryState.isExpired()) {
-        runningQueries.remove(queryId);
+        removeQuery(queryState);
         throw CallStatus.CANCELLED.withDescription("Query expired: " + queryId).toRuntimeException();
       }
+      return currentPollInfo(queryState);
+    }
 
+    /**
+     * A long poll (see {@link LongPollInterceptor}). A running query parks the call as a
+     * continuation on its next change; the PollInfo is sent from the stream timer when
+     * the query progresses, completes or is removed (cancelled, expired), or when
+     * {@code waitMs} runs out, and no thread is held in between. flight.poll.maxWaiters
+     * only limits how many calls may be parked; past it a poll is answered at once.
+     */
+    @Override
+    public CompletableFuture<PollInfo> longPoll(FlightDescriptor descriptor, long waitMs) {
+      try {
+        QueryState queryState = runningQueryOf(descriptor);
+        if (queryState == null || !longPollSlots.tryAcquire()) {
+          // New queries, unknown or finished ones and polls past the limit are answered at once
+          return CompletableFuture.completedFuture(poll(descriptor));
+        }
+
+        CompletableFuture<PollInfo> response = new CompletableFuture<>();
+        // Taken before the completion check below, so no change is missed
+        CompletableFuture<Void> change = queryState.nextChange();
+        ScheduledFuture<?> timeout = streamTimer.schedule(() -> answer(response, queryState), waitMs,
+            TimeUnit.MILLISECONDS);
+        response.whenComplete((info, error) -> {
+          timeout.cancel(false);
+          longPollSlots.release();
+        });
+        if (queryState.completed) {
+          answer(response, queryState);
+        } else {
+          change.thenRunAsync(() -> answer(response, queryState), streamTimer);
+        }
+        return response;
+      } catch (RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+
+    /** The query a poll descriptor names if it is still running, otherwise null. */
+    private QueryState runningQueryOf(FlightDescriptor descriptor) {
+      if (descriptor.isCommand() || descriptor.getPath().size() != 1) {
+        return null;
+      }
+      QueryState queryState = runningQueries.get(TicketSpec.parse(descriptor.getPath().get(0)).name);
+      return queryState == null || queryState.completed || queryState.isExpired() ? null : queryState;
+    }
+
+    /** Completes a parked long poll with the query's state now, unless it was already answered. */
+    private void answer(CompletableFuture<PollInfo> response, QueryState queryState) {
+      if (response.isDone()) {
+        return;
+      }
+      try {
+        if (runningQueries.get(queryState.queryId) != queryState) {
+          throw queryState.goneError();
+        }
+        response.complete(currentPollInfo(queryState));
+      } catch (RuntimeException e) {
+        response.completeExceptionally(e);
+      }
+    }
+
+    /** Progress so far, or the result (collecting the query) once it has completed. */
+    private PollInfo currentPollInfo(QueryState queryState) {
       queryState.updateProgress();
 
-      System.out.println("📊 Query " + queryId + " progress: " + String.format("%.1f%%", queryState.progress * 100));
+      if (Log.isDebugEnabled()) {
+        Log.debug("📊 Query {} progress: {}%", queryState.queryId, Math.round(queryState.progress * 1000) / 10.0);
+      }
 
       if (queryState.completed) {
-        // Query completed, return final FlightInfo
-        System.out.println("✅ Query " + queryId + " completed!");
-
-        runningQueries.remove(queryId); // Clean up completed query
+        Log.debug("✅ Query {} completed!", queryState.queryId);
+        removeQuery(queryState); // Clean up completed query
+      }
+      return pollInfo(queryState);
+    }
 
+    /**
+     * The final result once the query has completed, otherwise a progress update that
+     * keeps the poll descriptor.
+     */
+    private PollInfo pollInfo(QueryState queryState) {
+      if (queryState.completed) {
+        // Query completed, return final FlightInfo
         return new PollInfo(
             queryState.result, // Final result
             null, // No more polling needed (flight_descriptor unset)
@@ -549,26 +869,190 @@ public class Main {
         );
       } else {
         // Query still running, return progress update with partial FlightInfo
-        FlightDescriptor pollDescriptor = FlightDescriptor.path(queryId);
-
-        // Create partial FlightInfo showing current progress (still no endpoints)
-        FlightInfo partialFlightInfo = new FlightInfo(
-            schema,
-            FlightDescriptor.path(queryState.originalPath),
-            Collections.emptyList(), // Still no endpoints - query not complete
-            -1, // Unknown number of bytes
-            -1  // Unknown number of records
-        );
+        FlightDescriptor pollDescriptor = FlightDescriptor.path(queryState.queryId);
 
         return new PollInfo(
-            partialFlightInfo, // Partial FlightInfo (empty endpoints)
+            runningFlightInfo(queryState), // Partial FlightInfo (empty endpoints)
             pollDescriptor, // Continue polling with this descriptor
             Double.valueOf(queryState.progress),
-            null // No expiration time
+            Instant.ofEpochMilli(queryState.expirationTime) // Poll descriptor is dropped after this
         );
       }
     }
 
+    /**
+     * FlightInfo for a query that is still running: the partitions finished so far, with
+     * the {@link PollHints} in app_metadata. Its descriptor names the query, so the
+     * FlightInfo can be passed straight to CancelFlightInfo.
+     */
+    private FlightInfo runningFlightInfo(QueryState queryState) {
+      return new FlightInfo(
+          schema,
+          FlightDescriptor.path(queryState.queryId),
+          new ArrayList<>(queryState.partitions), // Grows as the query runs
+          -1, // Unknown number of bytes
+          -1, // Unknown number of records
+          true, // Partitions are in row order
+          IpcOption.DEFAULT,
+          pollHints(queryState).toAppMetadata()
+      );
+    }
+
+    /**
+     * Suggests polling again halfway to the estimated completion: sparse polls early in a
+     * long query, tightening as it nears the end. Never later than halfway to expiration.
+     */
+    private PollHints pollHints(QueryState queryState) {
+      long now = System.currentTimeMillis();
+      long eta = queryState.estimatedCompletionMillis();
+      long next = Math.min((eta - now) / 2, (queryState.expirationTime - now) / 2);
+      next = Math.max(pollMinIntervalMs, Math.min(pollMaxIntervalMs, next));
+      return new PollHints(eta, next);
+    }
+
+    /**
+     * One subscribe-progress stream. Every change of the query pushes a serialized
+     * PollInfo; in between, an empty Result is sent every flight.subscribe.heartbeatMs
+     * so the NLB never sees the connection idle. The stream ends with the PollInfo
+     * carrying the result endpoints. No thread is held between messages.
+     *
+     * With cancelOnDisconnect the subscriber owns the query: when its call is cancelled
+     * (or the client goes away) the query is cancelled too, checked every second.
+     */
+    private final class ProgressSubscription {
+      private final QueryState queryState;
+      private final CallContext context;
+      private final StreamListener<Result> listener;
+      private final boolean cancelOnDisconnect;
+
+      // Guarded by "this"
+      private ScheduledFuture<?> heartbeat;
+      private ScheduledFuture<?> disconnectWatch;
+      private boolean finished;
+
+      ProgressSubscription(QueryState queryState, CallContext context, StreamListener<Result> listener,
+                           boolean cancelOnDisconnect) {
+        this.queryState = queryState;
+        this.context = context;
+        this.listener = listener;
+        this.cancelOnDisconnect = cancelOnDisconnect;
+      }
+
+      void start() {
+        synchronized (this) {
+          heartbeat = streamTimer.scheduleAtFixedRate(this::heartbeat, subscribeHeartbeatMs, subscribeHeartbeatMs,
+              TimeUnit.MILLISECONDS);
+          if (cancelOnDisconnect) {
+            disconnectWatch = streamTimer.scheduleAtFixedRate(this::watchDisconnect, 1, 1, TimeUnit.SECONDS);
+          }
+        }
+        Log.debug("📡 Progress subscription started for {}", queryState.queryId);
+        publish();
+      }
+
+      private void publish() {
+        // Take the signal before reading the state so a change made meanwhile is not missed
+        CompletableFuture<Void> change = queryState.nextChange();
+        synchronized (this) {
+          if (finished || stopIfCancelled()) {
+            return;
+          }
+          try {
+            if (queryState.completed) {
+              removeQuery(queryState);
+              listener.onNext(toResult(pollInfo(queryState)));
+              finish();
+              listener.onCompleted();
+              return;
+            }
+            if (runningQueries.get(queryState.queryId) != queryState) {
+              finish();
+              listener.onError(queryState.goneError());
+              return;
+            }
+            queryState.updateProgress();
+            listener.onNext(toResult(pollInfo(queryState)));
+          } catch (RuntimeException e) {
+            Log.debug("⚠️ Progress subscription for {} ended: {}", queryState.queryId, e.getMessage());
+            finish();
+            return;
+          }
+        }
+        // Runs on the stream timer, not on the query worker that signalled the change
+        change.thenRunAsync(this::publish, streamTimer);
+      }
+
+      private synchronized void heartbeat() {
+        if (finished || stopIfCancelled()) {
+          return;
+        }
+        try {
+          listener.onNext(new Result(new byte[0]));
+        } catch (RuntimeException e) {
+          finish();
+        }
+      }
+
+      private synchronized void watchDisconnect() {
+        if (!finished) {
+          stopIfCancelled();
+        }
+      }
+
+      private boolean stopIfCancelled() {
+        if (context.isCancelled()) {
+          Log.debug("🚫 Progress subscription for {} cancelled by the client", queryState.queryId);
+          finish();
+          if (cancelOnDisconnect) {
+            cancelQuery(queryState.queryId);
+          }
+          return true;
+        }
+        return false;
+      }
+
+      private void finish() {
+        finished = true;
+        heartbeat.cancel(false);
+        if (disconnectWatch != null) {
+          disconnectWatch.cancel(false);
+        }
+      }
+
+      private Result toResult(PollInfo info) {
+        ByteBuffer buffer = info.serialize();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new Result(bytes);
+      }
+    }
+
+    @Override
+    public void close() {
+      expiryWheel.close();
+      // Stops every task, which releases its query allocator
+      runningQueries.values().forEach(this::removeQuery);
+      queryExecutor.close();
+      resultCache.close();
+      // Before the stream timer, which finishes releasing the allocators
+      callAllocators.close();
+      streamTimer.shutdownNow();
+    }
+
+    @Override
+    public void listActions(CallContext context, StreamListener<ActionType> listener) {
+      listener.onNext(new ActionType("echo", "Echo back the action body"));
+      listener.onNext(new ActionType("cache-stats", "Result cache size and hit/miss counters"));
+      listener.onNext(new ActionType("memory-stats", "Arrow memory in use and peak, per RPC type"));
+      listener.onNext(new ActionType("metrics", "RPC latency percentiles and counters as JSON (body \"prometheus\" for text format)"));
+      listener.onNext(new ActionType("subscribe-progress",
+          "Stream a serialized PollInfo on every progress change of a poll query (body: query id, optionally "
+              + "followed by ?cancelOnDisconnect), ending with the result"));
+      listener.onNext(new ActionType("cancel", "Cancel a running poll query (body: query id); returns the CancelStatus name"));
+      listener.onNext(FlightConstants.CANCEL_FLIGHT_INFO);
+      listener.onCompleted();
+    }
+
     @Override
     public void doAction(CallContext context, Action action, StreamListener<Result> listener) {
       if ("echo".equals(action.getType())) {
@@ -576,6 +1060,48 @@ public class Main {
         Result result = new Result(action.getBody());
         listener.onNext(result);
         listener.onCompleted();
+      } else if ("cache-stats".equals(action.getType())) {
+        listener.onNext(new Result(resultCache.stats().getBytes()));
+        listener.onCompleted();
+      } else if ("metrics".equals(action.getType())) {
+        boolean prometheus = "prometheus".equals(new String(action.getBody()).trim());
+        String body = prometheus ? metrics.toPrometheus() : metrics.toJson();
+        listener.onNext(new Result(body.getBytes()));
+        listener.onCompleted();
+      } else if ("memory-stats".equals(action.getType())) {
+        listener.onNext(new Result(callAllocators.stats().getBytes()));
+        listener.onCompleted();
+      } else if ("subscribe-progress".equals(action.getType())) {
+        String body = new String(action.getBody(), StandardCharsets.UTF_8).trim();
+        int query = body.indexOf('?');
+        String queryId = query < 0 ? body : body.substring(0, query);
+        boolean cancelOnDisconnect = query >= 0 && body.substring(query + 1).startsWith("cancelOnDisconnect");
+        QueryState queryState = runningQueries.get(queryId);
+        if (queryState == null) {
+          listener.onError(CallStatus.NOT_FOUND.withDescription("Query not found: " + queryId).toRuntimeException());
+          return;
+        }
+        new ProgressSubscription(queryState, context, listener, cancelOnDisconnect).start();
+      } else if ("cancel".equals(action.getType())) {
+        String queryId = new String(action.getBody(), StandardCharsets.UTF_8).trim();
+        listener.onNext(new Result(cancelQuery(queryId).name().getBytes(StandardCharsets.UTF_8)));
+        listener.onCompleted();
+      } else if (FlightConstants.CANCEL_FLIGHT_INFO.getType().equals(action.getType())) {
+        CancelStatus status;
+        try {
+          FlightInfo info = CancelFlightInfoRequest.deserialize(ByteBuffer.wrap(action.getBody())).getInfo();
+          String queryId = queryIdOf(info);
+          status = queryId == null ? CancelStatus.NOT_CANCELLABLE : cancelQuery(queryId);
+        } catch (IOException | URISyntaxException | FlightRuntimeException e) {
+          listener.onError(CallStatus.INVALID_ARGUMENT
+              .withDescription("Invalid CancelFlightInfoRequest: " + e.getMessage()).toRuntimeException());
+          return;
+        }
+        ByteBuffer result = new CancelFlightInfoResult(status).serialize();
+        byte[] bytes = new byte[result.remaining()];
+        result.get(bytes);
+        listener.onNext(new Result(bytes));
+        listener.onCompleted();
       } else {
         listener.onError(CallStatus.UNIMPLEMENTED.withDescription("Unknown action: " + action.getType()).toRuntimeException());
       }
@@ -0,0 +1,58 @@
+package org.example;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallInfo;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightServerMiddleware;
+import org.apache.arrow.flight.RequestContext;
+
+/**
+ * Times every RPC from call start to final status and records it in {@link ServerMetrics}.
+ *
+ * For DoGet the call only completes when the stream does, so getStream latency
+ * covers the whole transfer. The producer looks the middleware up through
+ * {@code context.getMiddleware(KEY)} to report the batches it sends.
+ */
+final class MetricsMiddleware implements FlightServerMiddleware {
+  static final Key<MetricsMiddleware> KEY = Key.of("metrics");
+
+  static final class Factory implements FlightServerMiddleware.Factory<MetricsMiddleware> {
+    private final ServerMetrics metrics;
+
+    Factory(ServerMetrics metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override
+    public MetricsMiddleware onCallStarted(CallInfo info, CallHeaders incomingHeaders, RequestContext context) {
+      ServerMetrics.MethodMetrics methodMetrics = metrics.forMethod(info.method());
+      methodMetrics.callStarted();
+      return new MetricsMiddleware(methodMetrics);
+    }
+  }
+
+  private final ServerMetrics.MethodMetrics methodMetrics;
+  private final long startNanos = System.nanoTime();
+
+  private MetricsMiddleware(ServerMetrics.MethodMetrics methodMetrics) {
+    this.methodMetrics = methodMetrics;
+  }
+
+  void batchSent(long bytes) {
+    methodMetrics.batchSent(bytes);
+  }
+
+  @Override
+  public void onBeforeSendingHeaders(CallHeaders outgoingHeaders) {
+  }
+
+  @Override
+  public void onCallCompleted(CallStatus status) {
+    methodMetrics.callCompleted(System.nanoTime() - startNanos, status.code());
+  }
+
+  @Override
+  public void onCallErrored(Throwable err) {
+    // The failing status is also passed to onCallCompleted, which counts it
+  }
+}
@@ -1,14 +1,24 @@
 package org.example;
 
+import io.grpc.stub.StreamObserver;
 import org.apache.arrow.flight.*;
+import org.apache.arrow.flight.impl.Flight;
+import org.apache.arrow.flight.impl.FlightServiceGrpc;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.IntVector;
 import org.apache.arrow.vector.VectorSchemaRoot;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Multi-threaded load tester for AWS Network Load Balancer
@@ -19,45 +29,222 @@ public class NLBLoadTester {
     private static final int PORT = 8815;
     private static final int DEFAULT_THREADS = 10;
     private static final int DEFAULT_DURATION = 300; // 5 minutes
+    private static final int DEFAULT_MAX_IN_FLIGHT = 10000;
+    private static final int DEFAULT_CHANNELS = 4;
+    private static final double DEFAULT_TOLERANCE_PERCENT = 10;
+
+    /**
+     * How workers run. PLATFORM blocks one OS thread per worker; ASYNC drives the gRPC
+     * async stub from completion callbacks, so an outstanding request holds no thread at all.
+     */
+    enum Engine { PLATFORM, ASYNC }
     
     private final String serverHost;
     private final int numThreads;
     private final int durationSeconds;
     private final boolean useDelay;
     private final int staggerSeconds;
+    private final double targetRate; // total requests/second across all threads, 0 = as fast as possible
+    private final boolean openLoop;
+    private final int maxInFlight;
+    private final int port;
+    private final FlightConnections.Mode connectionMode;
+    private final int channels;
+    private final Engine engine;
+    private final LoadTestResults results = new LoadTestResults("nlb-load-test");
+    private final String resultsPrefix;
+    private final String compareBaseline;
+    private final double tolerancePercent;
+    private FlightConnections connections; // open for the duration of runLoadTest
     
     // Shared counters
     private final AtomicInteger totalRequests = new AtomicInteger(0);
     private final AtomicInteger successfulRequests = new AtomicInteger(0);
     private final AtomicInteger failedRequests = new AtomicInteger(0);
-    private final AtomicLong totalResponseTime = new AtomicLong(0);
+    private final AtomicLong intendedRequests = new AtomicLong(0); // open loop: arrivals scheduled
+    private final AtomicLong missedArrivals = new AtomicLong(0);   // open loop: not sent, in-flight cap reached
+
+    // Latency histograms, one set per worker thread, merged for the report
+    private final Queue<OperationHistograms> threadHistograms = new ConcurrentLinkedQueue<>();
+    // For requests that are not tied to one worker thread (open loop, async callbacks)
+    private final ThreadLocal<OperationHistograms> localHistograms = ThreadLocal.withInitial(() -> {
+        OperationHistograms histograms = new OperationHistograms();
+        threadHistograms.add(histograms);
+        return histograms;
+    });
+
+    // Operation names used in the latency report
+    static final String OP_CONNECT = "connect";
+    static final String OP_GET_FLIGHT_INFO = "getFlightInfo";
+    static final String OP_GET_STREAM = "getStream";
+    static final String OP_REQUEST = "request";
+    static final String OP_REQUEST_CORRECTED = "request (corrected)";
+    static final String OP_FAILED = "failed request";
+
+    /**
+     * Per-operation latency histograms (nanoseconds) owned by a single worker thread,
+     * so recording never contends with other threads.
+     */
+    static final class OperationHistograms {
+        private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+
+        void record(String operation, long nanos) {
+            histograms.computeIfAbsent(operation, op -> new LatencyHistogram()).record(nanos);
+        }
+
+        void mergeInto(OperationHistograms target) {
+            histograms.forEach((op, histogram) ->
+                target.histograms.computeIfAbsent(op, o -> new LatencyHistogram()).merge(histogram));
+        }
+
+        LatencyHistogram get(String operation) {
+            return histograms.get(operation);
+        }
+
+        Map<String, LatencyHistogram> all() {
+            return histograms;
+        }
+    }
+    
+    /**
+     * Command-line options; defaults match the original fixed-thread, per-request-connection test.
+     */
+    static final class Options {
+        String host = DEFAULT_HOST;
+        int port = PORT;
+        int threads = DEFAULT_THREADS;
+        int durationSeconds = DEFAULT_DURATION;
+        boolean useDelay;
+        int staggerSeconds;
+        double rate;
+        boolean openLoop;
+        int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        FlightConnections.Mode connectionMode = FlightConnections.Mode.PER_REQUEST;
+        int channels = DEFAULT_CHANNELS;
+        Engine engine; // null = async for --open-loop, platform otherwise
+        String scenarioFile;
+        String resultsPrefix; // null = load-test-results/<test>-<timestamp>
+        String compareBaseline;
+        double tolerancePercent = DEFAULT_TOLERANCE_PERCENT;
+    }
     
     public NLBLoadTester(String serverHost, int numThreads, int durationSeconds, boolean useDelay, int staggerSeconds) {
-        this.serverHost = serverHost;
-        this.numThreads = numThreads;
-        this.durationSeconds = durationSeconds;
-        this.useDelay = useDelay;
-        this.staggerSeconds = staggerSeconds;
+        this(options(serverHost, numThreads, durationSeconds, useDelay, staggerSeconds));
+    }
+
+    NLBLoadTester(Options options) {
+        if (options.openLoop && options.rate <= 0) {
+            throw new IllegalArgumentException("Open-loop mode needs a target rate (--rate)");
+        }
+        this.serverHost = options.host;
+        this.port = options.port;
+        this.numThreads = options.threads;
+        this.durationSeconds = options.durationSeconds;
+        this.useDelay = options.useDelay;
+        this.staggerSeconds = options.staggerSeconds;
+        this.targetRate = options.rate;
+        this.openLoop = options.openLoop;
+        this.maxInFlight = options.maxInFlight > 0 ? options.maxInFlight : DEFAULT_MAX_IN_FLIGHT;
+        this.engine = options.engine != null ? options.engine : options.openLoop ? Engine.ASYNC : Engine.PLATFORM;
+        // The async engine multiplexes every request over long-lived channels
+        this.connectionMode = engine == Engine.ASYNC ? FlightConnections.Mode.POOLED : options.connectionMode;
+        this.channels = options.channels;
+        this.resultsPrefix = options.resultsPrefix;
+        this.compareBaseline = options.compareBaseline;
+        this.tolerancePercent = options.tolerancePercent;
+        results.config()
+            .put("host", serverHost)
+            .put("port", port)
+            .put("threads", numThreads)
+            .put("durationSeconds", durationSeconds)
+            .put("delay", useDelay)
+            .put("staggerSeconds", staggerSeconds)
+            .put("rate", targetRate)
+            .put("openLoop", openLoop)
+            .put("maxInFlight", maxInFlight)
+            .put("engine", engine.name().toLowerCase())
+            .put("connections", connectionMode == FlightConnections.Mode.POOLED ? "pooled" : "per-request")
+            .put("channels", channels);
+    }
+
+    private static Options options(String serverHost, int numThreads, int durationSeconds, boolean useDelay,
+                                   int staggerSeconds) {
+        Options options = new Options();
+        options.host = serverHost;
+        options.threads = numThreads;
+        options.durationSeconds = durationSeconds;
+        options.useDelay = useDelay;
+        options.staggerSeconds = staggerSeconds;
+        return options;
     }
     
-    public void runLoadTest() throws InterruptedException {
+    /**
+     * Runs the test, prints the report and writes the JSON/CSV results.
+     *
+     * @return false if a baseline was given and this run regressed against it
+     */
+    public boolean runLoadTest() throws Exception {
+        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+             FlightConnections connections = new FlightConnections(connectionMode, serverHost, port, channels, allocator)) {
+            this.connections = connections;
+            runWorkers();
+        }
+        return writeResults();
+    }
+
+    private boolean writeResults() throws IOException {
+        Path json = results.write(resultsPrefix != null
+            ? Paths.get(resultsPrefix) : LoadTestResults.defaultPrefix("nlb-load-test"));
+        System.out.println("💾 Results written to " + json + " (time series also as .csv)");
+        return compareBaseline == null || results.compare(Paths.get(compareBaseline), tolerancePercent);
+    }
+
+    private void record(OperationHistograms histograms, String operation, long nanos) {
+        histograms.record(operation, nanos);
+        results.recordLatency(operation, nanos);
+    }
+
+    private void runWorkers() throws InterruptedException {
         System.out.println("🧪 AWS Network Load Balancer Load Test");
         System.out.println("======================================");
         System.out.println("Host: " + serverHost);
-        System.out.println("Threads: " + numThreads);
+        System.out.println(openLoop ? "Max in flight: " + maxInFlight
+            : (engine == Engine.PLATFORM ? "Threads: " : "Workers: ") + numThreads);
         System.out.println("Duration: " + durationSeconds + " seconds");
         System.out.println("Mode: " + (useDelay ? "🐌 DELAYED (70s)" : "⚡ NORMAL"));
+        System.out.println("Engine: " + engine.name().toLowerCase());
+        System.out.println("Connections: " + (connectionMode == FlightConnections.Mode.POOLED
+            ? channels + " pooled channels shared by all workers"
+            : "new channel per request"));
         if (staggerSeconds > 0) {
             System.out.println("Stagger: " + staggerSeconds + " seconds (threads start gradually)");
         }
+        if (openLoop) {
+            System.out.println("Open loop: " + targetRate + " req/s regardless of completions");
+        } else if (targetRate > 0) {
+            System.out.println("Target rate: " + targetRate + " req/s (latency corrected for coordinated omission)");
+        }
         System.out.println();
-        
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
-        CountDownLatch endLatch = new CountDownLatch(numThreads);
 
+        results.start(totalRequests::get, failedRequests::get);
+        if (openLoop) {
+            runOpenLoop();
+            generateReport();
+            return;
+        }
+        
         long testStartTime = System.currentTimeMillis();
         long testEndTime = testStartTime + (durationSeconds * 1000L);
 
+        if (engine == Engine.ASYNC) {
+            runAsyncWorkers(testEndTime);
+            generateReport();
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CountDownLatch endLatch = new CountDownLatch(numThreads);
+
         if (staggerSeconds > 0) {
             // Staggered thread startup
             System.out.println("🚀 Starting " + numThreads + " worker threads over " + staggerSeconds + " seconds...");
@@ -102,7 +289,17 @@ public class NLBLoadTester {
             startLatch.countDown(); // Start all threads simultaneously
         }
         
-        // Progress monitoring
+        monitorProgress();
+        
+        System.out.println("⏳ Waiting for threads to complete...");
+        endLatch.await();
+        executor.shutdown();
+        
+        // Generate report
+        generateReport();
+    }
+    
+    private void monitorProgress() throws InterruptedException {
         for (int i = 1; i <= durationSeconds; i++) {
             Thread.sleep(1000);
             if (i % 30 == 0 || i <= 10) { // Show progress every 30 seconds, or first 10 seconds
@@ -113,63 +310,39 @@ public class NLBLoadTester {
                     i, current, success, rate);
             }
         }
-        
-        System.out.println("⏳ Waiting for threads to complete...");
-        endLatch.await();
-        executor.shutdown();
-        
-        // Generate report
-        generateReport();
     }
     
     private void runWorkerThread(int threadId, long endTime) {
-        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
-            Location location = Location.forGrpcInsecure(serverHost, PORT);
+        OperationHistograms histograms = new OperationHistograms();
+        threadHistograms.add(histograms);
+
+        // At a target rate each thread owns an even share of the schedule. Latency is also
+        // measured from when a request was *supposed* to start, so a stall that delays the
+        // following requests shows up in the percentiles instead of being hidden.
+        long intervalNanos = targetRate > 0 ? (long) (1_000_000_000L * numThreads / targetRate) : 0;
+        long nextIntendedStart = System.nanoTime();
 
+        try {
             // Keep making requests until test ends
             while (System.currentTimeMillis() < endTime) {
-                long requestStart = System.currentTimeMillis();
-
+                long intendedStart = nextIntendedStart;
+                if (intervalNanos > 0) {
+                    nextIntendedStart += intervalNanos;
+                    long wait = intendedStart - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
                 // Check if we still have time for another request
-                if (requestStart >= endTime) {
+                if (System.currentTimeMillis() >= endTime) {
                     break;
                 }
 
-                boolean success = false;
-
-                try (FlightClient client = FlightClient.builder(allocator, location).build()) {
-                    // Choose flight based on delay setting
-                    String flightName = useDelay ? "sample-delay" : "sample";
-                    FlightDescriptor descriptor = FlightDescriptor.path(flightName);
-                    FlightInfo info = client.getInfo(descriptor);
-
-                    // Get data stream
-                    Ticket ticket = info.getEndpoints().get(0).getTicket();
-                    try (FlightStream stream = client.getStream(ticket)) {
-                        while (stream.next()) {
-                            // Process data (just count rows)
-                            VectorSchemaRoot root = stream.getRoot();
-                            // Data processed successfully
-                        }
-                    }
-
-                    success = true;
-                    successfulRequests.incrementAndGet();
-
-                } catch (Exception e) {
-                    failedRequests.incrementAndGet();
-                    if (threadId <= 3) { // Only log errors from first 3 threads to avoid spam
-                        System.err.println("Thread " + threadId + " request error: " + e.getMessage());
-                    }
-                }
-
-                long requestEnd = System.currentTimeMillis();
-                long responseTime = requestEnd - requestStart;
-                totalResponseTime.addAndGet(responseTime);
-                totalRequests.incrementAndGet();
+                boolean success = performRequest(threadId, histograms, intervalNanos > 0 ? intendedStart : -1);
 
-                // Brief pause between requests (except for delay mode which naturally pauses)
-                if (!useDelay && success) {
+                // Brief pause between requests (except for delay mode which naturally pauses,
+                // and rate mode which paces requests itself)
+                if (!useDelay && success && intervalNanos == 0) {
                     try {
                         Thread.sleep(100); // 100ms pause for normal requests
                     } catch (InterruptedException e) {
@@ -188,15 +361,313 @@ public class NLBLoadTester {
             System.err.println("Thread " + threadId + " fatal error: " + e.getMessage());
         }
     }
-    
+
+    /**
+     * One getInfo + getStream round trip, recorded into {@code histograms}. The connect
+     * time (a new channel per request, or none for a pooled channel) is recorded on its own.
+     *
+     * @param intendedStartNanos when the request was scheduled to start, or -1 if unscheduled;
+     *                           used for the coordinated-omission corrected latency
+     */
+    private boolean performRequest(int threadId, OperationHistograms histograms, long intendedStartNanos) {
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        String operation = OP_CONNECT;
+
+        try (FlightConnections.Lease lease = connections.acquire()) {
+            FlightClient client = lease.client();
+            if (connectionMode == FlightConnections.Mode.PER_REQUEST) {
+                record(histograms, OP_CONNECT, lease.connectNanos());
+            }
+            long rpcStartNanos = System.nanoTime();
+
+            // Choose flight based on delay setting
+            String flightName = useDelay ? "sample-delay" : "sample";
+            FlightDescriptor descriptor = FlightDescriptor.path(flightName);
+            operation = OP_GET_FLIGHT_INFO;
+            FlightInfo info = client.getInfo(descriptor);
+            long infoNanos = System.nanoTime();
+            record(histograms, OP_GET_FLIGHT_INFO, infoNanos - rpcStartNanos);
+
+            // Get data stream, one per partition
+            operation = OP_GET_STREAM;
+            for (FlightEndpoint endpoint : info.getEndpoints()) {
+                try (FlightStream stream = client.getStream(endpoint.getTicket())) {
+                    while (stream.next()) {
+                        // Process data (just count rows)
+                        VectorSchemaRoot root = stream.getRoot();
+                        // Data processed successfully
+                    }
+                }
+            }
+            record(histograms, OP_GET_STREAM, System.nanoTime() - infoNanos);
+
+            success = true;
+            successfulRequests.incrementAndGet();
+
+        } catch (Exception e) {
+            failedRequests.incrementAndGet();
+            results.recordError(operation, e);
+            if (threadId <= 3) { // Only log errors from first 3 threads to avoid spam
+                System.err.println("Thread " + threadId + " request error: " + e.getMessage());
+            }
+        }
+
+        long endNanos = System.nanoTime();
+        record(histograms, success ? OP_REQUEST : OP_FAILED, endNanos - startNanos);
+        if (intendedStartNanos >= 0) {
+            record(histograms, OP_REQUEST_CORRECTED, endNanos - intendedStartNanos);
+        }
+        totalRequests.incrementAndGet();
+        return success;
+    }
+
+    /**
+     * Open loop: a pacer issues requests at {@code targetRate} on their own schedule,
+     * whether or not earlier requests have finished, so offered load does not drop
+     * when the server slows down. At most {@code maxInFlight} requests are outstanding;
+     * arrivals beyond the cap are counted as missed. The async engine (the default here)
+     * holds no thread per outstanding request; the platform engine runs them on a fixed
+     * pool of {@code numThreads}, where queueing shows up in the corrected latency.
+     */
+    private void runOpenLoop() throws InterruptedException {
+        System.out.println("🚀 Issuing " + targetRate + " req/s open-loop (max in flight: " + maxInFlight + ")...");
+
+        ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService dispatcher = engine == Engine.PLATFORM ? Executors.newFixedThreadPool(numThreads) : null;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long totalArrivals = (long) (targetRate * durationSeconds);
+        long startNanos = System.nanoTime();
+        long[] issued = {0}; // only touched by the pacer thread
+
+        pacer.scheduleAtFixedRate(() -> {
+            long due = Math.min(totalArrivals, (long) ((System.nanoTime() - startNanos) / 1e9 * targetRate));
+            while (issued[0] < due) {
+                long intendedStart = startNanos + (long) (issued[0] * 1e9 / targetRate);
+                int requestId = (int) ++issued[0];
+                intendedRequests.incrementAndGet();
+                if (!inFlight.tryAcquire()) {
+                    missedArrivals.incrementAndGet();
+                    continue;
+                }
+                if (dispatcher == null) {
+                    performRequestAsync(requestId, intendedStart).whenComplete((success, e) -> inFlight.release());
+                    continue;
+                }
+                dispatcher.execute(() -> {
+                    try {
+                        performRequest(requestId, localHistograms.get(), intendedStart);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }, 0, 1, TimeUnit.MILLISECONDS);
+
+        monitorProgress();
+
+        pacer.shutdown();
+        pacer.awaitTermination(5, TimeUnit.SECONDS);
+        System.out.println("⏳ Waiting for " + (maxInFlight - inFlight.availablePermits()) + " in-flight requests...");
+        if (dispatcher == null) {
+            if (!inFlight.tryAcquire(maxInFlight, 2, TimeUnit.MINUTES)) {
+                System.err.println("Gave up waiting for in-flight requests");
+            }
+            return;
+        }
+        dispatcher.shutdown();
+        if (!dispatcher.awaitTermination(2, TimeUnit.MINUTES)) {
+            System.err.println("Gave up waiting for in-flight requests");
+            dispatcher.shutdownNow();
+        }
+    }
+
+    /**
+     * Closed loop on the async engine: {@code numThreads} logical workers, each issuing
+     * its next request from the previous one's completion callback. A single scheduler
+     * thread handles stagger, pauses and pacing, so tens of thousands of outstanding
+     * streams need no more threads than the gRPC event loop.
+     */
+    private void runAsyncWorkers(long testEndTime) throws InterruptedException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch endLatch = new CountDownLatch(numThreads);
+        double staggerInterval = (double) staggerSeconds * 1000 / numThreads;
+
+        System.out.println("🚀 Starting " + numThreads + " async workers"
+            + (staggerSeconds > 0 ? " over " + staggerSeconds + " seconds..." : " simultaneously..."));
+        for (int i = 0; i < numThreads; i++) {
+            AsyncWorker worker = new AsyncWorker(i + 1, testEndTime, endLatch, scheduler);
+            scheduler.schedule(worker::start, (long) (i * staggerInterval), TimeUnit.MILLISECONDS);
+        }
+
+        monitorProgress();
+
+        System.out.println("⏳ Waiting for " + endLatch.getCount() + " workers to complete...");
+        endLatch.await();
+        scheduler.shutdown();
+    }
+
+    /**
+     * One closed-loop worker of the async engine; mirrors {@link #runWorkerThread}
+     * (pause, pacing and delay-mode cut-off) without holding a thread between requests.
+     */
+    private final class AsyncWorker {
+        private final int workerId;
+        private final long endTime;
+        private final CountDownLatch endLatch;
+        private final ScheduledExecutorService scheduler;
+        private final long intervalNanos = targetRate > 0 ? (long) (1_000_000_000L * numThreads / targetRate) : 0;
+        private long nextIntendedStart;
+
+        AsyncWorker(int workerId, long endTime, CountDownLatch endLatch, ScheduledExecutorService scheduler) {
+            this.workerId = workerId;
+            this.endTime = endTime;
+            this.endLatch = endLatch;
+            this.scheduler = scheduler;
+        }
+
+        void start() {
+            nextIntendedStart = System.nanoTime();
+            next();
+        }
+
+        private void next() {
+            if (System.currentTimeMillis() >= endTime) {
+                endLatch.countDown();
+                return;
+            }
+            if (intervalNanos == 0) {
+                issue(-1);
+                return;
+            }
+            long intendedStart = nextIntendedStart;
+            nextIntendedStart += intervalNanos;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                scheduler.schedule(() -> issue(intendedStart), wait, TimeUnit.NANOSECONDS);
+            } else {
+                issue(intendedStart);
+            }
+        }
+
+        private void issue(long intendedStart) {
+            if (System.currentTimeMillis() >= endTime) {
+                endLatch.countDown();
+                return;
+            }
+            performRequestAsync(workerId, intendedStart).whenComplete((success, e) -> {
+                if (useDelay && (System.currentTimeMillis() + 75000) > endTime) {
+                    endLatch.countDown();
+                    return;
+                }
+                // Always continue on the scheduler so a run of fast failures cannot recurse
+                long pause = !useDelay && success && intervalNanos == 0 ? 100 : 0;
+                scheduler.schedule(this::next, pause, TimeUnit.MILLISECONDS);
+            });
+        }
+    }
+
+    /**
+     * The async-stub equivalent of {@link #performRequest}: getFlightInfo, then DoGet on
+     * every endpoint at once, over a pooled channel. Stream messages are counted, not decoded.
+     */
+    private CompletableFuture<Boolean> performRequestAsync(int workerId, long intendedStartNanos) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        FlightServiceGrpc.FlightServiceStub stub = FlightServiceGrpc.newStub(connections.channel());
+        Flight.FlightDescriptor descriptor = Flight.FlightDescriptor.newBuilder()
+            .setType(Flight.FlightDescriptor.DescriptorType.PATH)
+            .addPath(useDelay ? "sample-delay" : "sample")
+            .build();
+
+        stub.getFlightInfo(descriptor, new StreamObserver<Flight.FlightInfo>() {
+            private Flight.FlightInfo info;
+
+            @Override
+            public void onNext(Flight.FlightInfo value) {
+                info = value;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                results.recordError(OP_GET_FLIGHT_INFO, t);
+                done.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                long infoNanos = System.nanoTime();
+                record(localHistograms.get(), OP_GET_FLIGHT_INFO, infoNanos - startNanos);
+                if (info == null || info.getEndpointCount() == 0) {
+                    IllegalStateException error = new IllegalStateException("FlightInfo has no endpoints");
+                    results.recordError(OP_GET_FLIGHT_INFO, error);
+                    done.completeExceptionally(error);
+                    return;
+                }
+                // All partitions at once; the request completes when the last stream does
+                AtomicInteger remaining = new AtomicInteger(info.getEndpointCount());
+                for (Flight.FlightEndpoint endpoint : info.getEndpointList()) {
+                    stub.doGet(endpoint.getTicket(), new StreamObserver<Flight.FlightData>() {
+                        @Override
+                        public void onNext(Flight.FlightData value) {
+                            // Data received successfully
+                        }
+
+                        @Override
+                        public void onError(Throwable t) {
+                            if (done.completeExceptionally(t)) {
+                                results.recordError(OP_GET_STREAM, t);
+                            }
+                        }
+
+                        @Override
+                        public void onCompleted() {
+                            if (remaining.decrementAndGet() == 0) {
+                                record(localHistograms.get(), OP_GET_STREAM, System.nanoTime() - infoNanos);
+                                done.complete(null);
+                            }
+                        }
+                    });
+                }
+            }
+        });
+
+        return done.handle((ignored, error) -> {
+            boolean success = error == null;
+            if (success) {
+                successfulRequests.incrementAndGet();
+            } else {
+                failedRequests.incrementAndGet();
+                if (workerId <= 3) {
+                    System.err.println("Worker " + workerId + " request error: " + error.getMessage());
+                }
+            }
+            long endNanos = System.nanoTime();
+            OperationHistograms histograms = localHistograms.get();
+            record(histograms, success ? OP_REQUEST : OP_FAILED, endNanos - startNanos);
+            if (intendedStartNanos >= 0) {
+                record(histograms, OP_REQUEST_CORRECTED, endNanos - intendedStartNanos);
+            }
+            totalRequests.incrementAndGet();
+            return success;
+        });
+    }
+
     private void generateReport() {
         int total = totalRequests.get();
         int success = successfulRequests.get();
         int failed = failedRequests.get();
-        long totalTime = totalResponseTime.get();
+
+        OperationHistograms merged = new OperationHistograms();
+        for (OperationHistograms histograms : threadHistograms) {
+            histograms.mergeInto(merged);
+        }
+        LatencyHistogram requests = merged.get(OP_REQUEST);
+        results.finish(durationSeconds, total, success, failed, merged.all());
         
         double successRate = total > 0 ? (double) success * 100 / total : 0;
-        double avgResponseTime = total > 0 ? (double) totalTime / total : 0;
+        double avgResponseTime = requests != null ? requests.mean() / 1_000_000 : 0;
+        double p99ResponseTime = requests != null ? requests.valueAtPercentile(99) / 1_000_000.0 : 0;
         double requestsPerSecond = (double) total / durationSeconds;
         double successPerSecond = (double) success / durationSeconds;
         
@@ -204,7 +675,8 @@ public class NLBLoadTester {
         System.out.println("📊 Load Test Results");
         System.out.println("===================");
         System.out.println("Test Duration: " + durationSeconds + " seconds");
-        System.out.println("Concurrent Threads: " + numThreads);
+        System.out.println(openLoop ? "Max In Flight: " + maxInFlight
+            : (engine == Engine.PLATFORM ? "Concurrent Threads: " : "Concurrent Workers: ") + numThreads);
         System.out.println("Request Mode: " + (useDelay ? "DELAYED (70s)" : "NORMAL"));
         System.out.println();
         System.out.println("Request Statistics:");
@@ -216,8 +688,21 @@ public class NLBLoadTester {
         System.out.println("Performance Metrics:");
         System.out.println("  Requests/second: " + String.format("%.2f", requestsPerSecond));
         System.out.println("  Successful requests/second: " + String.format("%.2f", successPerSecond));
+        if (openLoop) {
+            long intended = intendedRequests.get();
+            long missed = missedArrivals.get();
+            System.out.println("  Intended throughput: " + String.format("%.2f req/s", (double) intended / durationSeconds)
+                + " (" + intended + " scheduled, target " + targetRate + ")");
+            System.out.println("  Achieved throughput: " + String.format("%.2f req/s", successPerSecond));
+            System.out.println("  Missed arrivals: " + missed + " (in-flight cap of " + maxInFlight + " reached)");
+            if (successPerSecond < 0.95 * intended / durationSeconds) {
+                System.out.println("  ⚠️  Achieved < 95% of intended - server (or load generator) is saturated");
+            }
+        }
         System.out.println("  Average response time: " + String.format("%.0f ms", avgResponseTime));
         System.out.println();
+        printLatencyTable(merged);
+        System.out.println();
         
         // Performance assessment
         System.out.println("Load Balancer Assessment:");
@@ -239,60 +724,200 @@ public class NLBLoadTester {
             } else {
                 System.out.println("  ❌ VERY SLOW: Average response time >= 1s");
             }
+            if (p99ResponseTime >= 1000) {
+                System.out.println("  ⚠️  TAIL: p99 response time " + String.format("%.0f ms", p99ResponseTime)
+                    + " - check for NLB-induced spikes");
+            }
         }
         
         System.out.println();
         System.out.println("🏁 Load test completed!");
     }
     
+    private void printLatencyTable(OperationHistograms merged) {
+        System.out.println("Latency (ms):");
+        System.out.println(String.format("  %-22s %8s %9s %9s %9s %9s %9s %9s",
+            "Operation", "Count", "Mean", "p50", "p90", "p99", "p99.9", "Max"));
+        for (Map.Entry<String, LatencyHistogram> entry : merged.all().entrySet()) {
+            LatencyHistogram h = entry.getValue();
+            System.out.println(String.format("  %-22s %8d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                entry.getKey(), h.count(), h.mean() / 1e6,
+                h.valueAtPercentile(50) / 1e6, h.valueAtPercentile(90) / 1e6,
+                h.valueAtPercentile(99) / 1e6, h.valueAtPercentile(99.9) / 1e6, h.max() / 1e6));
+        }
+        if (merged.get(OP_REQUEST_CORRECTED) != null) {
+            System.out.println("  (\"" + OP_REQUEST_CORRECTED + "\" is measured from each request's scheduled start)");
+        }
+        LatencyHistogram connect = merged.get(OP_CONNECT);
+        LatencyHistogram requests = merged.get(OP_REQUEST);
+        if (connect != null && requests != null && requests.sum() > 0) {
+            System.out.println(String.format("  Connect (TCP + HTTP/2 handshake) is %.1f%% of request time",
+                100.0 * connect.sum() / requests.sum()));
+        }
+        if (connectionMode == FlightConnections.Mode.POOLED) {
+            LatencyHistogram pool = new LatencyHistogram();
+            connections.poolConnectNanos().forEach(pool::record);
+            System.out.println(String.format("  %d pooled channels connected once at start (mean %.2f ms, max %.2f ms)",
+                pool.count(), pool.mean() / 1e6, pool.max() / 1e6));
+        }
+    }
+    
     public static void main(String[] args) {
-        String host = DEFAULT_HOST;
-        int threads = DEFAULT_THREADS;
-        int duration = DEFAULT_DURATION;
-        boolean useDelay = false;
-        int staggerSeconds = 0;
+        Options options = new Options();
         
         // Parse command line arguments
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "--host":
-                    if (i + 1 < args.length) host = args[++i];
+                    if (i + 1 < args.length) options.host = args[++i];
+                    break;
+                case "--port":
+                    if (i + 1 < args.length) options.port = Integer.parseInt(args[++i]);
                     break;
                 case "--threads":
-                    if (i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+                    if (i + 1 < args.length) options.threads = Integer.parseInt(args[++i]);
                     break;
                 case "--duration":
-                    if (i + 1 < args.length) duration = Integer.parseInt(args[++i]);
+                    if (i + 1 < args.length) options.durationSeconds = Integer.parseInt(args[++i]);
                     break;
                 case "--delay":
-                    useDelay = true;
+                    options.useDelay = true;
                     break;
                 case "--stagger":
-                    if (i + 1 < args.length) staggerSeconds = Integer.parseInt(args[++i]);
+                    if (i + 1 < args.length) options.staggerSeconds = Integer.parseInt(args[++i]);
+                    break;
+                case "--rate":
+                    if (i + 1 < args.length) options.rate = Double.parseDouble(args[++i]);
+                    break;
+                case "--open-loop":
+                    options.openLoop = true;
+                    break;
+                case "--max-in-flight":
+                    if (i + 1 < args.length) options.maxInFlight = Integer.parseInt(args[++i]);
+                    break;
+                case "--connections":
+                    if (i + 1 < args.length) {
+                        options.connectionMode = parseConnectionMode(args[++i]);
+                    }
+                    break;
+                case "--channels":
+                    if (i + 1 < args.length) options.channels = Integer.parseInt(args[++i]);
+                    break;
+                case "--engine":
+                    if (i + 1 < args.length) options.engine = parseEngine(args[++i]);
+                    break;
+                case "--scenario":
+                    if (i + 1 < args.length) options.scenarioFile = args[++i];
+                    break;
+                case "--results":
+                    if (i + 1 < args.length) options.resultsPrefix = args[++i];
+                    break;
+                case "--compare":
+                    if (i + 1 < args.length) options.compareBaseline = args[++i];
+                    break;
+                case "--tolerance":
+                    if (i + 1 < args.length) options.tolerancePercent = Double.parseDouble(args[++i]);
                     break;
                 case "--help":
-                    System.out.println("Usage: java NLBLoadTester [options]");
-                    System.out.println("Options:");
-                    System.out.println("  --host <hostname>     Server hostname (default: " + DEFAULT_HOST + ")");
-                    System.out.println("  --threads <number>    Number of threads (default: " + DEFAULT_THREADS + ")");
-                    System.out.println("  --duration <seconds>  Test duration (default: " + DEFAULT_DURATION + ")");
-                    System.out.println("  --delay               Use delayed requests (70s each)");
-                    System.out.println("  --stagger <seconds>   Stagger thread startup over N seconds (default: 0)");
-                    System.out.println("  --help                Show this help");
-                    System.out.println();
-                    System.out.println("Examples:");
-                    System.out.println("  java NLBLoadTester --threads 15 --stagger 60");
-                    System.out.println("  java NLBLoadTester --threads 10 --duration 300 --delay");
+                    printUsage();
                     return;
             }
         }
         
+        if (options.scenarioFile != null) {
+            boolean slosMet;
+            try {
+                Scenario scenario = Scenario.load(Paths.get(options.scenarioFile));
+                slosMet = new ScenarioRunner(scenario, options).run();
+            } catch (Exception e) {
+                System.err.println("Scenario failed: " + e.getMessage());
+                System.exit(2);
+                return;
+            }
+            System.exit(slosMet ? 0 : 1);
+        }
+
+        boolean passed;
         try {
-            NLBLoadTester tester = new NLBLoadTester(host, threads, duration, useDelay, staggerSeconds);
-            tester.runLoadTest();
+            NLBLoadTester tester = new NLBLoadTester(options);
+            passed = tester.runLoadTest();
         } catch (Exception e) {
             System.err.println("Load test failed: " + e.getMessage());
             e.printStackTrace();
+            System.exit(2);
+            return;
+        }
+        if (!passed) {
+            System.exit(1);
         }
     }
+
+    private static void printUsage() {
+        System.out.println("Usage: java NLBLoadTester [options]");
+        System.out.println("Options:");
+        System.out.println("  --host <hostname>     Server hostname (default: " + DEFAULT_HOST + ")");
+        System.out.println("  --port <port>         Server port (default: " + PORT + ")");
+        System.out.println("  --threads <number>    Number of threads (default: " + DEFAULT_THREADS + ")");
+        System.out.println("  --duration <seconds>  Test duration (default: " + DEFAULT_DURATION + ")");
+        System.out.println("  --delay               Use delayed requests (70s each)");
+        System.out.println("  --stagger <seconds>   Stagger thread startup over N seconds (default: 0)");
+        System.out.println("  --rate <req/s>        Pace requests at a total target rate and report");
+        System.out.println("                        latency corrected for coordinated omission");
+        System.out.println("  --open-loop           Issue --rate req/s regardless of completions; --threads only");
+        System.out.println("                        sizes the pool of --engine platform");
+        System.out.println("  --max-in-flight <n>   Open-loop cap on outstanding requests (default: " + DEFAULT_MAX_IN_FLIGHT + ")");
+        System.out.println("  --connections <mode>  per-request (new channel each request, NLB churn) or pooled");
+        System.out.println("                        (default: per-request)");
+        System.out.println("  --channels <number>   Long-lived channels in pooled mode (default: " + DEFAULT_CHANNELS + ")");
+        System.out.println("  --engine <engine>     platform (thread per worker) or async (gRPC async stub over");
+        System.out.println("                        pooled channels; no thread per outstanding request)");
+        System.out.println("                        (default: async with --open-loop, platform otherwise)");
+        System.out.println("  --scenario <file>     Run a scenario file (operation mix, phases, SLOs) instead;");
+        System.out.println("                        exits with status 1 if an SLO is missed. Uses --host/--port");
+        System.out.println("  --results <prefix>    Write <prefix>.json and <prefix>.csv (default:");
+        System.out.println("                        load-test-results/<test>-<timestamp>)");
+        System.out.println("  --compare <json>      Compare with a baseline results file; exits with status 1 if");
+        System.out.println("                        throughput drops or a p99 rises by more than --tolerance");
+        System.out.println("  --tolerance <percent> Allowed regression for --compare (default: " + DEFAULT_TOLERANCE_PERCENT + ")");
+        System.out.println("  --help                Show this help");
+        System.out.println();
+        System.out.println("Examples:");
+        System.out.println("  java NLBLoadTester --threads 15 --stagger 60");
+        System.out.println("  java NLBLoadTester --threads 10 --duration 300 --delay");
+        System.out.println("  java NLBLoadTester --threads 20 --rate 100");
+        System.out.println("  java NLBLoadTester --open-loop --rate 5000 --duration 60");
+        System.out.println("  java NLBLoadTester --threads 50 --connections pooled --channels 8");
+        System.out.println("  java NLBLoadTester --threads 20000 --delay --engine async --channels 16");
+        System.out.println("  java NLBLoadTester --host localhost --scenario scenarios/mixed-production.properties");
+        System.out.println("  java NLBLoadTester --threads 20 --rate 100 --compare baseline.json --tolerance 5");
+    }
+
+    private static FlightConnections.Mode parseConnectionMode(String value) {
+        switch (value) {
+            case "per-request":
+                return FlightConnections.Mode.PER_REQUEST;
+            case "pooled":
+                return FlightConnections.Mode.POOLED;
+            default:
+                throw usageError("Unknown --connections mode: " + value + " (expected per-request or pooled)");
+        }
+    }
+
+    private static Engine parseEngine(String value) {
+        for (Engine engine : Engine.values()) {
+            if (engine.name().toLowerCase().equals(value)) {
+                return engine;
+            }
+        }
+        throw usageError("Unknown --engine: " + value + " (expected platform or async)");
+    }
+
+    /** Prints the message and the usage text, then exits with status 2. */
+    private static IllegalArgumentException usageError(String message) {
+        System.err.println(message);
+        System.err.println();
+        printUsage();
+        System.exit(2);
+        return new IllegalArgumentException(message); // not reached
+    }
 }
@@ -0,0 +1,444 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for an AWS Network Load Balancer, so the timeout behaviour can be
+ * tested without a cloud account. A single-threaded NIO TCP proxy that:
+ *
+ * <ul>
+ *   <li>picks a backend per connection by hashing the flow (client address and port,
+ *       listener port), so a connection sticks to one target like an NLB flow does;</li>
+ *   <li>forgets a flow once no bytes have moved in either direction for the idle
+ *       timeout (350s on a real NLB). In SILENT mode, like the NLB, nothing is sent at
+ *       that point; whichever side next sends a packet gets a TCP RST. RESET mode
+ *       resets both sides as soon as the timeout expires;</li>
+ *   <li>optionally resets random established connections, to exercise client retries.</li>
+ * </ul>
+ *
+ * <pre>
+ * java ... org.example.NlbProxy --listen 9815 --backend localhost:8815 --backend localhost:8816 \
+ *     --idle-timeout 30 --idle-action silent --reset-rate 0.001
+ * </pre>
+ */
+final class NlbProxy implements AutoCloseable {
+
+  enum IdleAction { SILENT, RESET }
+
+  private static final int DEFAULT_LISTEN_PORT = 9815;
+  private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 350;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long HOUSEKEEPING_MS = 200;
+
+  private final int listenPort;
+  private final List<InetSocketAddress> backends;
+  private final long idleTimeoutMs;
+  private final IdleAction idleAction;
+  private final double resetRatePerSecond;
+
+  private final Selector selector;
+  private final ServerSocketChannel server;
+  private final Set<Flow> flows = new HashSet<>();
+  private volatile boolean running = true;
+  private long lastHousekeeping = System.currentTimeMillis();
+  private long lastStatsReport = System.currentTimeMillis();
+
+  private final AtomicLong accepted = new AtomicLong();
+  private final AtomicLong idleExpired = new AtomicLong();
+  private final AtomicLong resetOnStaleFlow = new AtomicLong();
+  private final AtomicLong randomResets = new AtomicLong();
+  private final AtomicLong backendFailures = new AtomicLong();
+  private final long[] flowsPerBackend;
+
+  /** One proxied connection: client side, backend side and a buffer per direction. */
+  private final class Flow {
+    final SocketChannel client;
+    final SocketChannel backend;
+    final int backendIndex;
+    // Both buffers are kept in "fill" mode: position = end of pending data
+    final ByteBuffer toBackend = ByteBuffer.allocate(BUFFER_SIZE);
+    final ByteBuffer toClient = ByteBuffer.allocate(BUFFER_SIZE);
+    SelectionKey clientKey;
+    SelectionKey backendKey;
+    long lastActivity = System.currentTimeMillis();
+    boolean connected;
+    boolean clientEof;
+    boolean backendEof;
+    boolean expired;
+    boolean clientClosed;
+    boolean backendClosed;
+
+    Flow(SocketChannel client, SocketChannel backend, int backendIndex) {
+      this.client = client;
+      this.backend = backend;
+      this.backendIndex = backendIndex;
+    }
+  }
+
+  NlbProxy(int listenPort, List<InetSocketAddress> backends, long idleTimeoutMs, IdleAction idleAction,
+           double resetRatePerSecond) throws IOException {
+    if (backends.isEmpty()) {
+      throw new IllegalArgumentException("At least one backend is required");
+    }
+    this.listenPort = listenPort;
+    this.backends = List.copyOf(backends);
+    this.idleTimeoutMs = idleTimeoutMs;
+    this.idleAction = idleAction;
+    this.resetRatePerSecond = resetRatePerSecond;
+    this.flowsPerBackend = new long[backends.size()];
+    this.selector = Selector.open();
+    this.server = ServerSocketChannel.open();
+    server.bind(new InetSocketAddress(listenPort));
+    server.configureBlocking(false);
+    server.register(selector, SelectionKey.OP_ACCEPT);
+  }
+
+  /** Port actually bound (useful when constructed with port 0). */
+  int port() throws IOException {
+    return ((InetSocketAddress) server.getLocalAddress()).getPort();
+  }
+
+  /** Runs the event loop on the calling thread until {@link #close()}. */
+  void run() throws IOException {
+    while (running) {
+      selector.select(HOUSEKEEPING_MS);
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        if (!key.isValid()) {
+          continue;
+        }
+        try {
+          if (key.isAcceptable()) {
+            accept();
+          } else {
+            handle(key);
+          }
+        } catch (IOException e) {
+          Flow flow = (Flow) key.attachment();
+          if (flow != null) {
+            closeFlow(flow, true);
+          }
+        }
+      }
+      long now = System.currentTimeMillis();
+      if (now - lastHousekeeping >= HOUSEKEEPING_MS) {
+        housekeeping(now);
+      }
+    }
+    for (Flow flow : new ArrayList<>(flows)) {
+      closeFlow(flow, false);
+    }
+    server.close();
+    selector.close();
+  }
+
+  private void accept() throws IOException {
+    SocketChannel client = server.accept();
+    if (client == null) {
+      return;
+    }
+    accepted.incrementAndGet();
+    client.configureBlocking(false);
+    client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+    InetSocketAddress remote = (InetSocketAddress) client.getRemoteAddress();
+    int backendIndex = Math.floorMod(flowHash(remote, listenPort), backends.size());
+    SocketChannel backend = SocketChannel.open();
+    backend.configureBlocking(false);
+    backend.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+    Flow flow = new Flow(client, backend, backendIndex);
+    flows.add(flow);
+    flowsPerBackend[backendIndex]++;
+    flow.clientKey = client.register(selector, 0, flow);
+    try {
+      flow.connected = backend.connect(backends.get(backendIndex));
+    } catch (IOException e) {
+      backendFailures.incrementAndGet();
+      closeFlow(flow, true);
+      return;
+    }
+    flow.backendKey = backend.register(selector, 0, flow);
+    updateInterest(flow);
+  }
+
+  // Mixes the flow's addresses so consecutive (or all-even) ephemeral ports spread evenly
+  static int flowHash(InetSocketAddress client, int listenPort) {
+    long h = Objects.hash(client.getAddress(), listenPort) * 0x9E3779B97F4A7C15L + client.getPort();
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  private void handle(SelectionKey key) throws IOException {
+    Flow flow = (Flow) key.attachment();
+    boolean fromClient = key == flow.clientKey;
+
+    if (key.isConnectable()) {
+      try {
+        flow.connected = flow.backend.finishConnect();
+      } catch (IOException e) {
+        // Target unreachable: the NLB resets the client connection
+        backendFailures.incrementAndGet();
+        closeFlow(flow, true);
+        return;
+      }
+    }
+
+    if (flow.expired) {
+      // The flow is gone from the "load balancer": anything arriving now is answered with RST
+      if (key.isReadable()) {
+        resetOnStaleFlow.incrementAndGet();
+        if (fromClient) {
+          reset(flow.client);
+          flow.clientClosed = true;
+        } else {
+          reset(flow.backend);
+          flow.backendClosed = true;
+        }
+        if (flow.clientClosed && flow.backendClosed) {
+          flows.remove(flow);
+        } else {
+          updateInterest(flow);
+        }
+      }
+      return;
+    }
+
+    if (key.isValid() && key.isReadable()) {
+      SocketChannel source = fromClient ? flow.client : flow.backend;
+      ByteBuffer buffer = fromClient ? flow.toBackend : flow.toClient;
+      int read = source.read(buffer);
+      if (read < 0) {
+        if (fromClient) {
+          flow.clientEof = true;
+        } else {
+          flow.backendEof = true;
+        }
+      } else if (read > 0) {
+        flow.lastActivity = System.currentTimeMillis();
+      }
+    }
+    if (key.isValid() && key.isWritable()) {
+      flush(flow, fromClient);
+    }
+    // Forward what was just read without waiting for another select round
+    flush(flow, !fromClient);
+
+    boolean drained = flow.toBackend.position() == 0 && flow.toClient.position() == 0;
+    if ((flow.clientEof || flow.backendEof) && drained) {
+      closeFlow(flow, false);
+    } else {
+      updateInterest(flow);
+    }
+  }
+
+  // Writes pending data towards the client (toClient) or the backend (toBackend)
+  private void flush(Flow flow, boolean toClient) throws IOException {
+    if (!toClient && !flow.connected) {
+      return;
+    }
+    ByteBuffer buffer = toClient ? flow.toClient : flow.toBackend;
+    if (buffer.position() == 0) {
+      return;
+    }
+    buffer.flip();
+    int written = (toClient ? flow.client : flow.backend).write(buffer);
+    buffer.compact();
+    if (written > 0) {
+      flow.lastActivity = System.currentTimeMillis();
+    }
+  }
+
+  private void updateInterest(Flow flow) {
+    if (flow.expired) {
+      if (!flow.clientClosed) {
+        flow.clientKey.interestOps(SelectionKey.OP_READ);
+      }
+      if (!flow.backendClosed && flow.backendKey != null) {
+        flow.backendKey.interestOps(SelectionKey.OP_READ);
+      }
+      return;
+    }
+    int clientOps = 0;
+    if (flow.connected && !flow.clientEof && flow.toBackend.hasRemaining()) {
+      clientOps |= SelectionKey.OP_READ;
+    }
+    if (flow.toClient.position() > 0) {
+      clientOps |= SelectionKey.OP_WRITE;
+    }
+    flow.clientKey.interestOps(clientOps);
+
+    if (flow.backendKey == null) {
+      return;
+    }
+    int backendOps;
+    if (!flow.connected) {
+      backendOps = SelectionKey.OP_CONNECT;
+    } else {
+      backendOps = 0;
+      if (!flow.backendEof && flow.toClient.hasRemaining()) {
+        backendOps |= SelectionKey.OP_READ;
+      }
+      if (flow.toBackend.position() > 0) {
+        backendOps |= SelectionKey.OP_WRITE;
+      }
+    }
+    flow.backendKey.interestOps(backendOps);
+  }
+
+  private void housekeeping(long now) {
+    double resetChance = resetRatePerSecond * (now - lastHousekeeping) / 1000.0;
+    lastHousekeeping = now;
+    for (Flow flow : new ArrayList<>(flows)) {
+      if (flow.expired) {
+        continue;
+      }
+      if (now - flow.lastActivity >= idleTimeoutMs) {
+        idleExpired.incrementAndGet();
+        if (idleAction == IdleAction.RESET) {
+          closeFlow(flow, true);
+        } else {
+          flow.expired = true;
+          flow.toBackend.clear();
+          flow.toClient.clear();
+          updateInterest(flow);
+        }
+      } else if (flow.connected && resetChance > 0 && ThreadLocalRandom.current().nextDouble() < resetChance) {
+        randomResets.incrementAndGet();
+        closeFlow(flow, true);
+      }
+    }
+    if (now - lastStatsReport >= 30_000) {
+      lastStatsReport = now;
+      System.out.println("📡 " + stats());
+    }
+  }
+
+  private void closeFlow(Flow flow, boolean reset) {
+    flows.remove(flow);
+    if (!flow.clientClosed) {
+      close(flow.client, reset);
+      flow.clientClosed = true;
+    }
+    if (!flow.backendClosed) {
+      close(flow.backend, reset);
+      flow.backendClosed = true;
+    }
+  }
+
+  private static void close(SocketChannel channel, boolean reset) {
+    if (reset) {
+      reset(channel);
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // Already gone
+    }
+  }
+
+  // Closing with SO_LINGER 0 makes the kernel send RST instead of FIN
+  private static void reset(SocketChannel channel) {
+    try {
+      if (channel.isOpen()) {
+        channel.setOption(StandardSocketOptions.SO_LINGER, 0);
+      }
+    } catch (IOException e) {
+      // Not connected yet: a plain close is all we can do
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // Already gone
+    }
+  }
+
+  String stats() {
+    StringBuilder perBackend = new StringBuilder();
+    for (int i = 0; i < backends.size(); i++) {
+      perBackend.append(i == 0 ? "" : ", ").append(backends.get(i).getHostString())
+          .append(':').append(backends.get(i).getPort()).append('=').append(flowsPerBackend[i]);
+    }
+    return "connections: " + accepted.get() + " accepted, " + flows.size() + " open, "
+        + idleExpired.get() + " idle-expired, " + resetOnStaleFlow.get() + " RST on stale flow, "
+        + randomResets.get() + " random resets, " + backendFailures.get() + " backend failures; flows per backend: "
+        + perBackend;
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    selector.wakeup();
+  }
+
+  public static void main(String[] args) throws Exception {
+    int listenPort = DEFAULT_LISTEN_PORT;
+    List<InetSocketAddress> backends = new ArrayList<>();
+    long idleTimeoutSeconds = DEFAULT_IDLE_TIMEOUT_SECONDS;
+    IdleAction idleAction = IdleAction.SILENT;
+    double resetRate = 0;
+
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--listen":
+          listenPort = Integer.parseInt(args[++i]);
+          break;
+        case "--backend":
+          String[] hostPort = args[++i].split(":");
+          backends.add(new InetSocketAddress(hostPort[0], Integer.parseInt(hostPort[1])));
+          break;
+        case "--idle-timeout":
+          idleTimeoutSeconds = Long.parseLong(args[++i]);
+          break;
+        case "--idle-action":
+          idleAction = IdleAction.valueOf(args[++i].toUpperCase());
+          break;
+        case "--reset-rate":
+          resetRate = Double.parseDouble(args[++i]);
+          break;
+        case "--help":
+        default:
+          System.out.println("Usage: java NlbProxy [options]");
+          System.out.println("Options:");
+          System.out.println("  --listen <port>          Listen port (default: " + DEFAULT_LISTEN_PORT + ")");
+          System.out.println("  --backend <host:port>    Target server; repeat for several (default: localhost:8815)");
+          System.out.println("  --idle-timeout <seconds> Flow idle timeout (default: " + DEFAULT_IDLE_TIMEOUT_SECONDS + ", as on AWS NLB)");
+          System.out.println("  --idle-action <action>   silent (RST when either side next sends, as on AWS NLB)");
+          System.out.println("                           or reset (RST both sides at the timeout) (default: silent)");
+          System.out.println("  --reset-rate <per-sec>   Chance per second that an open connection is reset (default: 0)");
+          return;
+      }
+    }
+    if (backends.isEmpty()) {
+      backends.add(new InetSocketAddress("localhost", 8815));
+    }
+
+    NlbProxy proxy = new NlbProxy(listenPort, backends, idleTimeoutSeconds * 1000, idleAction, resetRate);
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println("📡 " + proxy.stats())));
+    System.out.println("📡 NLB proxy listening on port " + proxy.port() + " -> " + backends
+        + " (idle timeout " + idleTimeoutSeconds + "s, " + idleAction.name().toLowerCase() + ", reset rate " + resetRate + "/s)");
+    proxy.run();
+  }
+}
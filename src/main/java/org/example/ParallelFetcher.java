@@ -0,0 +1,314 @@
+package org.example;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallOption;
+import org.apache.arrow.flight.FlightCallHeaders;
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightEndpoint;
+import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.flight.FlightStream;
+import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.flight.Ticket;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads every endpoint of a FlightInfo, up to {@code parallelism} streams at a time.
+ *
+ * Endpoints are spread round-robin over the given clients, so with several connections
+ * the partitions travel over separate HTTP/2 connections (and, behind an NLB, possibly
+ * separate targets) instead of sharing one. Endpoint locations are ignored: the clients
+ * already point at the host to fetch from, which need not be the one the server
+ * advertises (flight.advertiseHost).
+ *
+ * Batches are handed off as they arrive, on the fetch threads; a result with a single
+ * endpoint is read on the calling thread.
+ *
+ * A stream that fails with UNAVAILABLE (connection reset, e.g. by the NLB) is resumed
+ * with a ticket carrying the batches and rows already received, so only the lost
+ * tail is transferred again and the handler never sees a batch twice.
+ *
+ * Compression (see {@link BatchCompression}) is requested on the ticket or with
+ * {@link #compression}; gRPC decompresses before the handler sees a batch. Only clients
+ * from {@link BatchCompression#client} opt in, other clients get the stream uncompressed.
+ */
+final class ParallelFetcher implements AutoCloseable {
+
+  /** Receives each batch; called concurrently for different endpoints. */
+  interface BatchHandler {
+    /** {@code root} is only valid during the call. */
+    void onBatch(int endpointIndex, VectorSchemaRoot root) throws Exception;
+  }
+
+  static final class Stats {
+    final int endpoints;
+    final long rows;
+    final long batches;
+    final long bytes;
+    final long nanos;
+    final long resumes;
+
+    Stats(int endpoints, long rows, long batches, long bytes, long nanos, long resumes) {
+      this.endpoints = endpoints;
+      this.rows = rows;
+      this.batches = batches;
+      this.bytes = bytes;
+      this.nanos = nanos;
+      this.resumes = resumes;
+    }
+
+    double megabytesPerSecond() {
+      return nanos == 0 ? 0 : bytes / 1e6 / (nanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%,d rows in %,d batches from %d endpoints, %.1f MB in %.2fs (%.1f MB/s)%s",
+          rows, batches, endpoints, bytes / 1e6, nanos / 1e9, megabytesPerSecond(),
+          resumes > 0 ? ", " + resumes + " resumed" : "");
+    }
+  }
+
+  private static final long RESUME_BACKOFF_MS = 200;
+
+  private final ExecutorService executor;
+  private final int maxResumes;
+  private final AtomicLong resumes = new AtomicLong();
+  private CallOption[] options = new CallOption[0];
+
+  ParallelFetcher(int parallelism) {
+    this(parallelism, 3);
+  }
+
+  /**
+   * @param maxResumes how many times one stream may be resumed before its failure is rethrown
+   */
+  ParallelFetcher(int parallelism, int maxResumes) {
+    this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+        new QueryExecutor.NamedThreadFactory("fetch"));
+    this.maxResumes = maxResumes;
+  }
+
+  /** Ask for every stream compressed with this codec (none, lz4, zstd) via the request header. */
+  ParallelFetcher compression(String codec) {
+    BatchCompression.encoding(codec);
+    CallHeaders headers = new FlightCallHeaders();
+    headers.insert(BatchCompression.HEADER, codec);
+    options = new CallOption[] {new HeaderCallOption(headers)};
+    return this;
+  }
+
+  Stats fetch(FlightClient client, FlightInfo info, BatchHandler handler) throws Exception {
+    return fetch(Collections.singletonList(client), info, handler);
+  }
+
+  /**
+   * Fetches every endpoint of a result of the sample schema, four at a time, and prints
+   * each batch's values. Batches of different partitions may interleave, but each batch
+   * is printed as one block.
+   *
+   * @param indent put before every line printed
+   */
+  static void fetchAndPrint(FlightClient client, FlightInfo info, String indent) throws Exception {
+    try (ParallelFetcher fetcher = new ParallelFetcher(4)) {
+      fetcher.fetch(client, info, (partition, root) -> {
+        IntVector valueVector = (IntVector) root.getVector("value");
+        StringBuilder sb = new StringBuilder();
+        sb.append(indent).append("Received batch with ").append(root.getRowCount())
+            .append(" rows (partition ").append(partition).append("):").append(System.lineSeparator());
+        for (int i = 0; i < root.getRowCount(); i++) {
+          sb.append(indent).append("  Row ").append(i).append(": ")
+              .append(valueVector.isNull(i) ? "null" : String.valueOf(valueVector.get(i)))
+              .append(System.lineSeparator());
+        }
+        System.out.print(sb);
+      });
+    }
+  }
+
+  /**
+   * Fetches all endpoints of {@code info} and waits for them. On the first failure the
+   * remaining fetches are cancelled and the failure is rethrown.
+   *
+   * @param handler may be null to just count rows and bytes
+   */
+  Stats fetch(List<FlightClient> clients, FlightInfo info, BatchHandler handler) throws Exception {
+    List<FlightEndpoint> endpoints = info.getEndpoints();
+    AtomicLong rows = new AtomicLong();
+    AtomicLong batches = new AtomicLong();
+    AtomicLong bytes = new AtomicLong();
+    long resumesBefore = resumes.get();
+    long startNanos = System.nanoTime();
+
+    if (endpoints.size() == 1) {
+      fetchEndpoint(clients.get(0), endpoints.get(0), 0, handler, rows, batches, bytes);
+    } else {
+      List<Future<?>> futures = new ArrayList<>(endpoints.size());
+      for (int i = 0; i < endpoints.size(); i++) {
+        FlightClient client = clients.get(i % clients.size());
+        FlightEndpoint endpoint = endpoints.get(i);
+        int index = i;
+        futures.add(executor.submit(() -> {
+          fetchEndpoint(client, endpoint, index, handler, rows, batches, bytes);
+          return null;
+        }));
+      }
+      try {
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (ExecutionException e) {
+        futures.forEach(f -> f.cancel(true));
+        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      } catch (InterruptedException e) {
+        futures.forEach(f -> f.cancel(true));
+        throw e;
+      }
+    }
+    return new Stats(endpoints.size(), rows.get(), batches.get(), bytes.get(), System.nanoTime() - startNanos,
+        resumes.get() - resumesBefore);
+  }
+
+  private void fetchEndpoint(FlightClient client, FlightEndpoint endpoint, int index, BatchHandler handler,
+                             AtomicLong rows, AtomicLong batches, AtomicLong bytes) throws Exception {
+    Ticket ticket = endpoint.getTicket();
+    long batchesReceived = 0;
+    long rowsReceived = 0;
+    for (int attempt = 0; ; attempt++) {
+      try (FlightStream stream = client.getStream(ticket, options)) {
+        while (stream.next()) {
+          if (Thread.currentThread().isInterrupted()) {
+            stream.cancel("Fetch cancelled", null);
+            return;
+          }
+          VectorSchemaRoot root = stream.getRoot();
+          batchesReceived++;
+          rowsReceived += root.getRowCount();
+          rows.addAndGet(root.getRowCount());
+          batches.incrementAndGet();
+          long batchBytes = 0;
+          for (FieldVector vector : root.getFieldVectors()) {
+            batchBytes += vector.getBufferSize();
+          }
+          bytes.addAndGet(batchBytes);
+          if (handler != null) {
+            handler.onBatch(index, root);
+          }
+        }
+        return;
+      } catch (FlightRuntimeException e) {
+        Ticket resumed = e.status().code() == FlightStatusCode.UNAVAILABLE && attempt < maxResumes
+            ? resumeTicket(endpoint.getTicket(), batchesReceived, rowsReceived) : null;
+        if (resumed == null) {
+          throw e;
+        }
+        resumes.incrementAndGet();
+        Thread.sleep(RESUME_BACKOFF_MS * (attempt + 1));
+        ticket = resumed;
+      }
+    }
+  }
+
+  /**
+   * The original ticket restarted after what was already received, or null if the
+   * ticket is not in a format the server can resume.
+   */
+  private static Ticket resumeTicket(Ticket original, long batchesReceived, long rowsReceived) {
+    try {
+      TicketSpec spec = TicketSpec.parse(original);
+      return spec.withResume(spec.resumeBatch + batchesReceived, spec.resumeRow + rowsReceived).toTicket();
+    } catch (FlightRuntimeException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Bulk-transfer benchmark: fetches one large partitioned result with increasing
+   * parallelism, to show throughput scaling with streams and connections. With
+   * {@code --compression lz4|zstd} the batches are sent compressed, which trades server
+   * and client CPU for fewer bytes on the wire.
+   *
+   * Usage: ParallelFetcher [--host h] [--port p] [--rows n] [--partitions p] [--connections c] [--compression c]
+   */
+  public static void main(String[] args) throws Exception {
+    String host = "localhost";
+    int port = 8815;
+    long rows = 50_000_000;
+    int partitions = Runtime.getRuntime().availableProcessors();
+    int connections = 4;
+    String compression = "none";
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--host": host = args[++i]; break;
+        case "--port": port = Integer.parseInt(args[++i]); break;
+        case "--rows": rows = Long.parseLong(args[++i]); break;
+        case "--partitions": partitions = Integer.parseInt(args[++i]); break;
+        case "--connections": connections = Integer.parseInt(args[++i]); break;
+        case "--compression": compression = args[++i]; break;
+        default:
+          System.err.println("Unknown option: " + args[i]);
+          System.err.println("Usage: ParallelFetcher [--host h] [--port p] [--rows n] [--partitions p] [--connections c] [--compression c]");
+          System.exit(1);
+      }
+    }
+
+    System.out.println("🚚 Parallel Fetch Benchmark");
+    System.out.println("===========================");
+    System.out.println("Server: " + host + ":" + port);
+    System.out.printf("Rows: %,d   Partitions: %d   Connections: %d   Compression: %s%n%n",
+        rows, partitions, connections, compression);
+
+    try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
+      List<FlightClient> clients = new ArrayList<>();
+      try {
+        for (int i = 0; i < connections; i++) {
+          clients.add(BatchCompression.client(allocator, host, port));
+        }
+        for (int parallelism = 1; ; parallelism = Math.min(parallelism * 2, partitions)) {
+          // One partition for the single-stream baseline, otherwise one per stream
+          int parts = parallelism == 1 ? 1 : partitions;
+          FlightInfo info = clients.get(0).getInfo(
+              FlightDescriptor.path("sample?rows=" + rows + "&partitions=" + parts));
+          try (ParallelFetcher fetcher = new ParallelFetcher(parallelism).compression(compression)) {
+            List<FlightClient> used = clients.subList(0, Math.min(parallelism, clients.size()));
+            Stats stats = fetcher.fetch(used, info, null);
+            System.out.printf("  %2d stream(s) over %d connection(s): %s%n", parallelism, used.size(), stats);
+          }
+          if (parallelism >= partitions) {
+            break;
+          }
+        }
+      } finally {
+        for (FlightClient client : clients) {
+          client.close();
+        }
+      }
+    }
+  }
+}
@@ -4,10 +4,13 @@ import org.apache.arrow.flight.*;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
 import org.apache.arrow.vector.IntVector;
-import org.apache.arrow.vector.VectorSchemaRoot;
-import org.apache.arrow.vector.types.pojo.Schema;
 
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Client that demonstrates PollFlightInfo pattern using actions for long-running queries
@@ -19,6 +22,28 @@ public class PollFlightClient {
     int port = 8815;
     String queryType = "long-query"; // Default to 2-minute query
     boolean fixedPollingTest = false;
+    long longPollMs = 0;
+    boolean subscribe = false;
+    long cancelAfterMs = 0;
+
+    // --host/--port/--long-poll/--subscribe/--cancel-after can go anywhere, e.g. to run through NlbProxy on localhost
+    List<String> positional = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if ("--host".equals(args[i]) && i + 1 < args.length) {
+        serverHost = args[++i];
+      } else if ("--port".equals(args[i]) && i + 1 < args.length) {
+        port = Integer.parseInt(args[++i]);
+      } else if ("--long-poll".equals(args[i]) && i + 1 < args.length) {
+        longPollMs = Long.parseLong(args[++i]) * 1000;
+      } else if ("--subscribe".equals(args[i])) {
+        subscribe = true;
+      } else if ("--cancel-after".equals(args[i]) && i + 1 < args.length) {
+        cancelAfterMs = Long.parseLong(args[++i]) * 1000;
+      } else {
+        positional.add(args[i]);
+      }
+    }
+    args = positional.toArray(new String[0]);
 
     // Parse command line arguments
     if (args.length > 0) {
@@ -41,6 +66,10 @@ public class PollFlightClient {
           default:
             System.err.println("Unknown query type: " + args[0]);
             System.err.println("Valid options: --long, --very-long, --ultra-long, --fixed-polling");
+            System.err.println("Connection: [hostname] or --host <hostname>, --port <port> (default 8815)");
+            System.err.println("Long poll: --long-poll <seconds> (server holds each poll until progress)");
+            System.err.println("Subscribe: --subscribe (one streamed subscribe-progress call instead of polling)");
+            System.err.println("Cancel: --cancel-after <seconds> (cancel the query on the server part-way)");
             System.exit(1);
         }
 
@@ -73,8 +102,10 @@ public class PollFlightClient {
 
     if (fixedPollingTest) {
       runFixedPollingTest(serverHost, port, queryType);
+    } else if (subscribe) {
+      runSubscriptionTest(serverHost, port, queryType, cancelAfterMs);
     } else {
-      runStandardPollingTest(serverHost, port, queryType);
+      runStandardPollingTest(serverHost, port, queryType, longPollMs, cancelAfterMs);
     }
   }
 
@@ -168,49 +199,20 @@ public class PollFlightClient {
         FlightInfo flightInfo = pollInfo.getFlightInfo();
         if (flightInfo != null) {
           System.out.println("\n📊 FlightInfo available after 65 seconds:");
-          System.out.println("  Schema: " + flightInfo.getSchema());
+          System.out.println("  Schema: " + flightInfo.getSchemaOptional().orElse(null));
           System.out.println("  Records: " + flightInfo.getRecords());
           System.out.println("  Endpoints: " + flightInfo.getEndpoints().size());
 
           if (!flightInfo.getEndpoints().isEmpty()) {
             System.out.println("\n📥 Retrieving available data...");
-            Ticket ticket = flightInfo.getEndpoints().get(0).getTicket();
-
-            try (FlightStream stream = client.getStream(ticket)) {
-              Schema schema = stream.getSchema();
-              System.out.println("  Result schema: " + schema);
-
-              int batchCount = 0;
-              int totalRows = 0;
-
-              while (stream.next()) {
-                VectorSchemaRoot root = stream.getRoot();
-                batchCount++;
-                totalRows += root.getRowCount();
-
-                System.out.println("  Batch " + batchCount + ": " + root.getRowCount() + " rows");
-
-                // Show first few rows
-                if (batchCount == 1) {
-                  IntVector valueVector = (IntVector) root.getVector("value");
-                  int rowsToShow = Math.min(5, root.getRowCount());
-                  System.out.println("    First " + rowsToShow + " rows:");
-                  for (int i = 0; i < rowsToShow; i++) {
-                    System.out.println("      Row " + i + ": " + valueVector.get(i));
-                  }
-                  if (root.getRowCount() > 5) {
-                    System.out.println("      ... (" + (root.getRowCount() - 5) + " more rows)");
-                  }
-                }
-              }
-
-              System.out.println("  Total: " + totalRows + " rows in " + batchCount + " batches");
-
-              if (queryCompleted) {
-                System.out.println("  ✅ Complete dataset retrieved");
-              } else {
-                System.out.println("  ⚠️ Partial dataset retrieved (query may still be running)");
-              }
+            long[] totals = readAllEndpoints(client, flightInfo);
+            System.out.println("  Total: " + totals[0] + " rows in " + totals[1] + " batches from " +
+                flightInfo.getEndpoints().size() + " endpoints");
+
+            if (queryCompleted) {
+              System.out.println("  ✅ Complete dataset retrieved");
+            } else {
+              System.out.println("  ⚠️ Partial dataset retrieved (query may still be running)");
             }
           } else {
             System.out.println("  ⚠️ No endpoints available yet (query still in progress)");
@@ -234,7 +236,15 @@ public class PollFlightClient {
     }
   }
 
-  private static void runStandardPollingTest(String serverHost, int port, String queryType) throws Exception {
+  /**
+   * Polls with {@link AdaptivePoller}: the server's next-poll hints set the pace.
+   *
+   * @param longPollMs if > 0, ask the server to hold each poll until the query changes
+   *                   (up to this long) instead of sleeping between polls
+   * @param cancelAfterMs if > 0, cancel the query this long after starting it
+   */
+  private static void runStandardPollingTest(String serverHost, int port, String queryType,
+                                             long longPollMs, long cancelAfterMs) throws Exception {
     
     String queryDescription = getQueryDescription(queryType);
     System.out.println("🧪 PollFlightInfo Specification Test");
@@ -242,6 +252,11 @@ public class PollFlightClient {
     System.out.println("Server: " + serverHost + ":" + port);
     System.out.println("Query: " + queryType + " (" + queryDescription + ")");
     System.out.println("💡 Using proper PollFlightInfo RPC according to Flight specification");
+    if (longPollMs > 0) {
+      System.out.println("💡 Long polling: server holds each poll up to " + longPollMs / 1000 + "s");
+    } else {
+      System.out.println("💡 Adaptive polling: waits between polls follow the server's hints");
+    }
     System.out.println();
 
     try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
@@ -256,45 +271,44 @@ public class PollFlightClient {
 
         long startTime = System.currentTimeMillis();
 
-        // Step 1: Start the query with initial PollFlightInfo call
-        FlightDescriptor queryDescriptor = FlightDescriptor.path(queryType);
-        PollInfo pollInfo = client.pollInfo(queryDescriptor);
-
-        System.out.println("📊 Initial poll response received");
-        System.out.println("  Progress: " + (pollInfo.getProgress().isPresent() ?
-            String.format("%.1f%%", pollInfo.getProgress().get() * 100) : "unknown"));
-        System.out.println("  Expiration: " + pollInfo.getExpirationTime().orElse(null));
-        System.out.println("  Has FlightInfo: " + (pollInfo.getFlightInfo() != null));
-        System.out.println("  Has poll descriptor: " + pollInfo.getFlightDescriptor().isPresent());
-
-        // Step 2: Poll until query completes
-        FlightDescriptor pollDescriptor = pollInfo.getFlightDescriptor().orElse(null);
-        int pollCount = 1;
-
-        while (pollDescriptor != null) {
-          System.out.println("\n⏰ Waiting 10 seconds before next poll...");
-          Thread.sleep(10000);
-
-          pollCount++;
-          System.out.println("🔄 Polling query status (poll #" + pollCount + ")...");
-
-          pollInfo = client.pollInfo(pollDescriptor);
-
-          System.out.println("📊 Poll response:");
-          System.out.println("  Progress: " + (pollInfo.getProgress().isPresent() ?
-              String.format("%.1f%%", pollInfo.getProgress().get() * 100) : "unknown"));
-          System.out.println("  Expiration: " + pollInfo.getExpirationTime().orElse(null));
-          System.out.println("  Has FlightInfo: " + (pollInfo.getFlightInfo() != null));
-
-          pollDescriptor = pollInfo.getFlightDescriptor().orElse(null);
+        // Start the query and poll until it completes
+        AdaptivePoller poller = new AdaptivePoller(client).longPollMs(longPollMs);
+        if (cancelAfterMs > 0) {
+          cancelLater(cancelAfterMs, () -> {
+            CancelStatus status = poller.cancel();
+            System.out.println("\n🛑 Cancel requested after " + cancelAfterMs / 1000 + "s: " +
+                (status == null ? "query not started yet" : status));
+          });
+        }
+        PollInfo pollInfo;
+        try {
+          pollInfo = poller.run(FlightDescriptor.path(queryType), (pollNumber, info, nextDelayMs) -> {
+            FlightInfo partial = info.getFlightInfo();
+            PollHints hints = partial == null ? null : PollHints.fromAppMetadata(partial.getAppMetadata());
+
+            System.out.println("\n📊 Poll #" + pollNumber + " response:");
+            System.out.println("  Progress: " + (info.getProgress().isPresent() ?
+                String.format("%.1f%%", info.getProgress().get() * 100) : "unknown"));
+            System.out.println("  Expiration: " + info.getExpirationTime().orElse(null));
+            System.out.println("  Has FlightInfo: " + (partial != null));
+            if (hints != null && hints.estimatedCompletionMillis > 0) {
+              System.out.println("  Estimated completion: " + Instant.ofEpochMilli(hints.estimatedCompletionMillis));
+            }
 
-          if (pollDescriptor == null) {
-            System.out.println("✅ Query completed! (flight_descriptor is unset)");
-            break;
-          } else {
-            System.out.println("⏳ Query still running, will continue polling...");
+            if (nextDelayMs < 0) {
+              System.out.println("✅ Query completed! (flight_descriptor is unset)");
+            } else {
+              System.out.println("⏳ Query still running, next poll in " + nextDelayMs / 1000.0 + "s...");
+            }
+          });
+        } catch (FlightRuntimeException e) {
+          if (e.status().code() != FlightStatusCode.CANCELLED) {
+            throw e;
           }
+          System.out.println("🛑 Query cancelled after " + poller.pollCount() + " polls: " + e.getMessage());
+          return;
         }
+        int pollCount = poller.pollCount();
 
         long endTime = System.currentTimeMillis();
         long totalDuration = endTime - startTime;
@@ -317,44 +331,15 @@ public class PollFlightClient {
         FlightInfo flightInfo = pollInfo.getFlightInfo();
         if (flightInfo != null) {
           System.out.println("\n📊 Final FlightInfo received:");
-          System.out.println("  Schema: " + flightInfo.getSchema());
+          System.out.println("  Schema: " + flightInfo.getSchemaOptional().orElse(null));
           System.out.println("  Records: " + flightInfo.getRecords());
           System.out.println("  Endpoints: " + flightInfo.getEndpoints().size());
 
           if (!flightInfo.getEndpoints().isEmpty()) {
             System.out.println("\n📥 Retrieving query results...");
-            Ticket ticket = flightInfo.getEndpoints().get(0).getTicket();
-
-            try (FlightStream stream = client.getStream(ticket)) {
-              Schema schema = stream.getSchema();
-              System.out.println("  Result schema: " + schema);
-
-              int batchCount = 0;
-              int totalRows = 0;
-
-              while (stream.next()) {
-                VectorSchemaRoot root = stream.getRoot();
-                batchCount++;
-                totalRows += root.getRowCount();
-
-                System.out.println("  Batch " + batchCount + ": " + root.getRowCount() + " rows");
-
-                // Show first few rows
-                if (batchCount == 1) {
-                  IntVector valueVector = (IntVector) root.getVector("value");
-                  int rowsToShow = Math.min(5, root.getRowCount());
-                  System.out.println("    First " + rowsToShow + " rows:");
-                  for (int i = 0; i < rowsToShow; i++) {
-                    System.out.println("      Row " + i + ": " + valueVector.get(i));
-                  }
-                  if (root.getRowCount() > 5) {
-                    System.out.println("      ... (" + (root.getRowCount() - 5) + " more rows)");
-                  }
-                }
-              }
-
-              System.out.println("  Total: " + totalRows + " rows in " + batchCount + " batches");
-            }
+            long[] totals = readAllEndpoints(client, flightInfo);
+            System.out.println("  Total: " + totals[0] + " rows in " + totals[1] + " batches from " +
+                flightInfo.getEndpoints().size() + " endpoints");
           }
         } else {
           System.out.println("⚠️  No FlightInfo received in final poll response");
@@ -370,6 +355,132 @@ public class PollFlightClient {
     }
   }
   
+  /**
+   * Starts the query with one pollFlightInfo, then follows it over a single
+   * subscribe-progress stream: one PollInfo per progress change, empty heartbeats between.
+   * The subscription owns the query (cancelOnDisconnect): stopping the client cancels it.
+   *
+   * @param cancelAfterMs if > 0, cancel the query with doAction("cancel") this long after starting it
+   */
+  private static void runSubscriptionTest(String serverHost, int port, String queryType,
+                                          long cancelAfterMs) throws Exception {
+    System.out.println("🧪 Progress Subscription Test");
+    System.out.println("=============================");
+    System.out.println("Server: " + serverHost + ":" + port);
+    System.out.println("Query: " + queryType + " (" + getQueryDescription(queryType) + ")");
+    System.out.println("💡 One long-lived doAction(\"subscribe-progress\") stream instead of repeated polls");
+    System.out.println();
+
+    try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+         FlightClient client = FlightClient.builder(allocator, Location.forGrpcInsecure(serverHost, port)).build()) {
+      long startTime = System.currentTimeMillis();
+      PollInfo pollInfo = client.pollInfo(FlightDescriptor.path(queryType));
+      FlightDescriptor pollDescriptor = pollInfo.getFlightDescriptor().orElse(null);
+      if (pollDescriptor == null) {
+        System.out.println("✅ Query completed immediately");
+      } else {
+        String queryId = String.join("/", pollDescriptor.getPath());
+        System.out.println("🚀 Started " + queryId + ", subscribing to progress...");
+
+        if (cancelAfterMs > 0) {
+          cancelLater(cancelAfterMs, () -> {
+            Result status = client.doAction(new Action("cancel", queryId.getBytes())).next();
+            System.out.println("🛑 Cancel requested after " + cancelAfterMs / 1000 + "s: " + new String(status.getBody()));
+          });
+        }
+
+        int updates = 0;
+        int heartbeats = 0;
+        Iterator<Result> results = client.doAction(
+            new Action("subscribe-progress", (queryId + "?cancelOnDisconnect").getBytes()));
+        try {
+          while (results.hasNext()) {
+            byte[] body = results.next().getBody();
+            long elapsed = (System.currentTimeMillis() - startTime) / 1000;
+            if (body.length == 0) {
+              heartbeats++;
+              System.out.println("💓 Heartbeat (" + elapsed + "s)");
+              continue;
+            }
+            updates++;
+            pollInfo = PollInfo.deserialize(ByteBuffer.wrap(body));
+            System.out.println("📊 Update #" + updates + " (" + elapsed + "s): progress " +
+                (pollInfo.getProgress().isPresent() ?
+                    String.format("%.1f%%", pollInfo.getProgress().get() * 100) : "unknown"));
+          }
+        } catch (FlightRuntimeException e) {
+          if (e.status().code() != FlightStatusCode.CANCELLED) {
+            throw e;
+          }
+          System.out.println("🛑 Subscription ended after " + updates + " updates: " + e.getMessage());
+          return;
+        }
+
+        System.out.println("\n📈 Subscription Statistics:");
+        System.out.println("  Total Duration: " + (System.currentTimeMillis() - startTime) / 1000.0 + " seconds");
+        System.out.println("  Progress Updates: " + updates);
+        System.out.println("  Heartbeats: " + heartbeats);
+      }
+
+      FlightInfo flightInfo = pollInfo.getFlightInfo();
+      if (flightInfo == null || flightInfo.getEndpoints().isEmpty()) {
+        System.out.println("⚠️  No result endpoints in the final update");
+        return;
+      }
+      try (ParallelFetcher fetcher = new ParallelFetcher(4)) {
+        System.out.println("✅ Retrieved " + fetcher.fetch(client, flightInfo, null));
+      }
+    }
+  }
+
+  /**
+   * Fetches every endpoint of the result in parallel (a partitioned result has one per
+   * partition), printing each batch and the first rows of the first partition.
+   *
+   * @return total rows and batches
+   */
+  private static long[] readAllEndpoints(FlightClient client, FlightInfo flightInfo) throws Exception {
+    System.out.println("  Result schema: " + flightInfo.getSchemaOptional().orElse(null));
+    AtomicBoolean shownFirstRows = new AtomicBoolean();
+    try (ParallelFetcher fetcher = new ParallelFetcher(4)) {
+      ParallelFetcher.Stats stats = fetcher.fetch(client, flightInfo, (partition, root) -> {
+        synchronized (System.out) {
+          System.out.println("  Batch: " + root.getRowCount() + " rows (partition " + partition + ")");
+
+          // Show first few rows
+          if (partition == 0 && shownFirstRows.compareAndSet(false, true)) {
+            IntVector valueVector = (IntVector) root.getVector("value");
+            int rowsToShow = Math.min(5, root.getRowCount());
+            System.out.println("    First " + rowsToShow + " rows:");
+            for (int i = 0; i < rowsToShow; i++) {
+              System.out.println("      Row " + i + ": " + valueVector.get(i));
+            }
+            if (root.getRowCount() > 5) {
+              System.out.println("      ... (" + (root.getRowCount() - 5) + " more rows)");
+            }
+          }
+        }
+      });
+      return new long[] {stats.rows, stats.batches};
+    }
+  }
+
+  /** Runs {@code cancel} on a daemon thread after {@code delayMs}. */
+  private static void cancelLater(long delayMs, Runnable cancel) {
+    Thread thread = new Thread(() -> {
+      try {
+        Thread.sleep(delayMs);
+        cancel.run();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException e) {
+        System.err.println("❌ Cancel failed: " + e.getMessage());
+      }
+    }, "cancel-timer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
   private static String getQueryDescription(String queryType) {
     switch (queryType) {
       case "long-query":
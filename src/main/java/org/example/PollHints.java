@@ -0,0 +1,66 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Polling hints the server puts in the app_metadata of a running query's FlightInfo:
+ * {@code eta=<epoch ms>&next=<ms>}.
+ *
+ * {@code eta} is the estimated completion time, extrapolated from progress so far;
+ * {@code next} is how long the client should wait before polling again. Clients that
+ * don't understand the hints can ignore them; the PollInfo itself is unchanged.
+ */
+final class PollHints {
+  static final long UNKNOWN = -1;
+
+  final long estimatedCompletionMillis; // epoch ms, UNKNOWN if not estimated
+  final long nextPollDelayMs;           // UNKNOWN if the server gave no hint
+
+  PollHints(long estimatedCompletionMillis, long nextPollDelayMs) {
+    this.estimatedCompletionMillis = estimatedCompletionMillis;
+    this.nextPollDelayMs = nextPollDelayMs;
+  }
+
+  byte[] toAppMetadata() {
+    return ("eta=" + estimatedCompletionMillis + "&next=" + nextPollDelayMs).getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the hints, or null if the metadata is absent or not in this format
+   *         (e.g. a server that doesn't send hints)
+   */
+  static PollHints fromAppMetadata(byte[] metadata) {
+    if (metadata == null || metadata.length == 0) {
+      return null;
+    }
+    long eta = UNKNOWN;
+    long next = UNKNOWN;
+    for (String param : new String(metadata, StandardCharsets.UTF_8).split("&")) {
+      int eq = param.indexOf('=');
+      if (eq < 0) {
+        return null;
+      }
+      try {
+        long value = Long.parseLong(param.substring(eq + 1));
+        switch (param.substring(0, eq)) {
+          case "eta":
+            eta = value;
+            break;
+          case "next":
+            next = value;
+            break;
+          default:
+            // Newer server, unknown hint: skip it
+        }
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return new PollHints(eta, next);
+  }
+
+  @Override
+  public String toString() {
+    return "PollHints{eta=" + estimatedCompletionMillis + ", next=" + nextPollDelayMs + "ms}";
+  }
+}
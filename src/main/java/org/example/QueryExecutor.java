@@ -0,0 +1,227 @@
+package org.example;
+
+import org.apache.arrow.flight.CallStatus;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded executor for long-running queries.
+ *
+ * A query is a sequence of timed steps scheduled on a small shared scheduler, so a
+ * query that is waiting between steps does not hold a thread. Admission is bounded
+ * by a global concurrency cap and optional per-query-type caps; queries over a cap
+ * wait in a bounded queue, and anything beyond the queue is rejected with
+ * RESOURCE_EXHAUSTED.
+ */
+class QueryExecutor implements AutoCloseable {
+
+  /**
+   * One query's work, executed step by step.
+   */
+  interface QueryTask {
+    long DONE = -1;
+
+    /**
+     * Runs the next step and returns the delay in milliseconds before the following
+     * step, or {@link #DONE} once the query is finished.
+     */
+    long runStep() throws Exception;
+  }
+
+  /**
+   * Handle to a submitted query.
+   */
+  static final class QueryHandle {
+    final String queryType;
+    private final QueryTask task;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private ScheduledFuture<?> pending;
+
+    private QueryHandle(String queryType, QueryTask task) {
+      this.queryType = queryType;
+      this.task = task;
+    }
+
+    /** Completes normally when the task is done, exceptionally if it failed or was cancelled. */
+    CompletableFuture<Void> completion() {
+      return completion;
+    }
+  }
+
+  private final ScheduledExecutorService scheduler;
+  private final int maxConcurrent;
+  private final int maxQueued;
+  private final Map<String, Integer> typeLimits;
+
+  // Admission state, guarded by "this"
+  private final ArrayDeque<QueryHandle> queue = new ArrayDeque<>();
+  private final Map<String, Integer> activeByType = new HashMap<>();
+  private int active;
+
+  QueryExecutor(ServerConfig config) {
+    this(config.queryWorkerThreads, config.maxConcurrentQueries, config.maxQueuedQueries, config.queryTypeLimits);
+  }
+
+  QueryExecutor(int workerThreads, int maxConcurrent, int maxQueued, Map<String, Integer> typeLimits) {
+    this.scheduler = Executors.newScheduledThreadPool(workerThreads, new NamedThreadFactory("query-worker"));
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueued = maxQueued;
+    this.typeLimits = typeLimits;
+  }
+
+  /**
+   * Starts the task now if there is capacity, queues it otherwise.
+   *
+   * @throws org.apache.arrow.flight.FlightRuntimeException RESOURCE_EXHAUSTED if the queue is full
+   */
+  synchronized QueryHandle submit(String queryType, QueryTask task) {
+    QueryHandle handle = new QueryHandle(queryType, task);
+    if (hasCapacity(queryType)) {
+      start(handle);
+    } else if (queue.size() < maxQueued) {
+      queue.addLast(handle);
+    } else {
+      throw CallStatus.RESOURCE_EXHAUSTED
+          .withDescription("Query capacity exhausted (" + active + " running, " + queue.size() + " queued)")
+          .toRuntimeException();
+    }
+    return handle;
+  }
+
+  /**
+   * Cancels a queued or running query, interrupting its step if one is executing.
+   */
+  boolean cancel(QueryHandle handle) {
+    synchronized (this) {
+      if (queue.remove(handle)) {
+        handle.completion.cancel(false);
+        return true;
+      }
+    }
+    synchronized (handle) {
+      if (handle.completion.isDone()) {
+        return false;
+      }
+      if (handle.pending != null) {
+        handle.pending.cancel(true);
+      }
+    }
+    finish(handle, null, true);
+    return true;
+  }
+
+  synchronized int activeCount() {
+    return active;
+  }
+
+  synchronized int queuedCount() {
+    return queue.size();
+  }
+
+  private boolean hasCapacity(String queryType) {
+    if (active >= maxConcurrent) {
+      return false;
+    }
+    Integer limit = typeLimits.get(queryType);
+    return limit == null || activeByType.getOrDefault(queryType, 0) < limit;
+  }
+
+  // Caller holds "this"
+  private void start(QueryHandle handle) {
+    active++;
+    activeByType.merge(handle.queryType, 1, Integer::sum);
+    synchronized (handle) {
+      handle.pending = scheduler.schedule(() -> runStep(handle), 0, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void runStep(QueryHandle handle) {
+    if (handle.completion.isDone()) {
+      return;
+    }
+    long nextDelay;
+    try {
+      nextDelay = handle.task.runStep();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      finish(handle, e, true);
+      return;
+    } catch (Exception e) {
+      finish(handle, e, false);
+      return;
+    }
+
+    if (nextDelay == QueryTask.DONE) {
+      finish(handle, null, false);
+      return;
+    }
+    synchronized (handle) {
+      if (!handle.completion.isDone()) {
+        handle.pending = scheduler.schedule(() -> runStep(handle), nextDelay, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private void finish(QueryHandle handle, Throwable error, boolean cancelled) {
+    boolean transitioned;
+    if (cancelled) {
+      transitioned = handle.completion.cancel(false);
+    } else if (error != null) {
+      transitioned = handle.completion.completeExceptionally(error);
+    } else {
+      transitioned = handle.completion.complete(null);
+    }
+    if (transitioned) {
+      release(handle);
+    }
+  }
+
+  private synchronized void release(QueryHandle handle) {
+    active--;
+    activeByType.computeIfPresent(handle.queryType, (type, count) -> count > 1 ? count - 1 : null);
+
+    // Start as many queued queries as the freed capacity allows, skipping types at their limit
+    Iterator<QueryHandle> it = queue.iterator();
+    while (it.hasNext() && active < maxConcurrent) {
+      QueryHandle next = it.next();
+      if (hasCapacity(next.queryType)) {
+        it.remove();
+        start(next);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Daemon thread factory with readable names for thread dumps.
+   */
+  static final class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger(0);
+
+    NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
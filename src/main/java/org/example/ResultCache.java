@@ -0,0 +1,324 @@
+package org.example;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of ready-built Arrow record batches, keyed by ticket.
+ *
+ * Entries hold off-heap {@link ArrowRecordBatch}es owned by a dedicated child of the
+ * server allocator. Serving a hit loads those buffers into the stream's root by
+ * reference (no row-by-row refill) and hands them to putNext. The cache is bounded
+ * by total bytes with LRU eviction, and entries expire after a TTL: a timing wheel
+ * drops them when it runs out, whether or not they are asked for again. Entries are
+ * reference counted, so evicting one while it is being streamed is safe. Concurrent
+ * misses on the same key build the result once; the others wait for it.
+ */
+final class ResultCache implements AutoCloseable {
+
+  /**
+   * Builds the batches of a result into roots allocated from the given allocator.
+   * The source must give every batch its own buffers (see
+   * {@link SequenceBatchSource#SequenceBatchSource(Schema, BufferAllocator, long, int, int, boolean)}),
+   * because the cache keeps each batch after the source moves on.
+   */
+  interface Loader {
+    AsyncStreamWriter.BatchSource open(BufferAllocator allocator);
+  }
+
+  static final class Entry {
+    private final List<ArrowRecordBatch> batches;
+    private final long bytes;
+    private final long createdAt;
+    private final AtomicInteger refs = new AtomicInteger(1); // the cache's own reference
+    // Set while the entry is in the cache; guarded by the cache
+    private String key;
+    private TimingWheel<Entry>.Timeout expiry;
+
+    private Entry(List<ArrowRecordBatch> batches, long bytes) {
+      this.batches = batches;
+      this.bytes = bytes;
+      this.createdAt = System.currentTimeMillis();
+    }
+
+    private boolean retain() {
+      while (true) {
+        int current = refs.get();
+        if (current == 0) {
+          return false;
+        }
+        if (refs.compareAndSet(current, current + 1)) {
+          return true;
+        }
+      }
+    }
+
+    private void release() {
+      if (refs.decrementAndGet() == 0) {
+        batches.forEach(ArrowRecordBatch::close);
+      }
+    }
+  }
+
+  private final BufferAllocator allocator;
+  private final long maxBytes;
+  private final long maxEntryBytes;
+  private final long ttlMs;
+  private final TimingWheel<Entry> expiryWheel;
+
+  // Guarded by "this"; access-ordered for LRU eviction
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long totalBytes;
+  // Keys being built, completed when the build is done (or failed)
+  private final ConcurrentHashMap<String, CompletableFuture<Void>> building = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  ResultCache(BufferAllocator parent, ServerConfig config) {
+    this.maxBytes = config.cacheMaxBytes;
+    this.maxEntryBytes = Math.min(config.cacheMaxEntryBytes, config.cacheMaxBytes);
+    this.ttlMs = config.cacheTtlMs;
+    this.allocator = parent.newChildAllocator("result-cache", 0, Long.MAX_VALUE);
+    this.expiryWheel = new TimingWheel<>("cache-sweeper", config.querySweepTickMs, 512, this::expire);
+  }
+
+  boolean isEnabled() {
+    return maxBytes > 0;
+  }
+
+  /**
+   * Whether a result of this estimated size is worth caching at all.
+   */
+  boolean accepts(long estimatedBytes) {
+    return isEnabled() && estimatedBytes <= maxEntryBytes;
+  }
+
+  /**
+   * Opens a stream over the cached batches for {@code key}, building and caching
+   * them with {@code loader} on a miss.
+   */
+  AsyncStreamWriter.BatchSource openStream(String key, Schema schema, BufferAllocator streamAllocator, Loader loader) {
+    return openStream(key, schema, streamAllocator, loader, 0);
+  }
+
+  /**
+   * Like {@link #openStream(String, Schema, BufferAllocator, Loader)}, starting after the
+   * first {@code skipBatches} batches (a resumed stream); the skipped batches are not
+   * rebuilt or copied.
+   */
+  AsyncStreamWriter.BatchSource openStream(String key, Schema schema, BufferAllocator streamAllocator, Loader loader,
+                                           long skipBatches) {
+    // The stream's root comes first: once the entry is retained nothing may throw before the
+    // source that releases it exists
+    VectorSchemaRoot root = VectorSchemaRoot.create(schema, streamAllocator);
+    Entry entry;
+    try {
+      entry = acquire(key);
+      if (entry == null) {
+        entry = buildOnce(key, loader);
+      } else {
+        hits.incrementAndGet();
+      }
+    } catch (RuntimeException e) {
+      root.close();
+      throw e;
+    }
+    CachedBatchSource source = new CachedBatchSource(entry, root);
+    source.next = (int) Math.min(skipBatches, entry.batches.size());
+    return source;
+  }
+
+  private synchronized Entry acquire(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    if (System.currentTimeMillis() - entry.createdAt > ttlMs || !entry.retain()) {
+      remove(key, entry);
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Builds and caches the entry for {@code key}, unless another stream is already
+   * building it; then waits for that build and shares its entry. Returns the entry
+   * with a reference held for the caller.
+   */
+  private Entry buildOnce(String key, Loader loader) {
+    while (true) {
+      CompletableFuture<Void> built = new CompletableFuture<>();
+      CompletableFuture<Void> inFlight = building.putIfAbsent(key, built);
+      if (inFlight == null) {
+        try {
+          // Another build may have finished between our miss and claiming the key
+          Entry entry = acquire(key);
+          if (entry != null) {
+            hits.incrementAndGet();
+            return entry;
+          }
+          misses.incrementAndGet();
+          return put(key, build(loader));
+        } finally {
+          building.remove(key, built);
+          built.complete(null);
+        }
+      }
+      inFlight.join();
+      Entry entry = acquire(key);
+      if (entry != null) {
+        hits.incrementAndGet();
+        return entry;
+      }
+      // The build failed or its entry is already gone: build it ourselves
+    }
+  }
+
+  private Entry build(Loader loader) {
+    List<ArrowRecordBatch> batches = new ArrayList<>();
+    long bytes = 0;
+    try (AsyncStreamWriter.BatchSource source = loader.open(allocator)) {
+      VectorUnloader unloader = new VectorUnloader(source.root());
+      while (source.fillNext()) {
+        // The batch takes its own reference to the buffers, which outlives the source
+        ArrowRecordBatch batch = unloader.getRecordBatch();
+        batches.add(batch);
+        bytes += batch.computeBodyLength();
+      }
+    } catch (RuntimeException e) {
+      batches.forEach(ArrowRecordBatch::close);
+      throw e;
+    }
+    return new Entry(Collections.unmodifiableList(batches), bytes);
+  }
+
+  /**
+   * Inserts the entry and returns it (or an equivalent entry another stream built
+   * first) with a reference held for the caller.
+   */
+  private synchronized Entry put(String key, Entry entry) {
+    Entry existing = entries.get(key);
+    if (existing != null && existing.retain()) {
+      entry.release();
+      return existing;
+    }
+    if (existing != null) {
+      remove(key, existing);
+    }
+    entries.put(key, entry);
+    totalBytes += entry.bytes;
+    entry.key = key;
+    entry.expiry = expiryWheel.schedule(entry, entry.createdAt + ttlMs);
+    entry.retain();
+    evictIfNeeded();
+    return entry;
+  }
+
+  // Caller holds "this"
+  private void evictIfNeeded() {
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (totalBytes > maxBytes && it.hasNext()) {
+      Entry eldest = it.next().getValue();
+      it.remove();
+      totalBytes -= eldest.bytes;
+      evictions.incrementAndGet();
+      eldest.expiry.cancel();
+      eldest.release();
+    }
+  }
+
+  // Caller holds "this"
+  private void remove(String key, Entry entry) {
+    if (entries.remove(key, entry)) {
+      totalBytes -= entry.bytes;
+      evictions.incrementAndGet();
+      entry.expiry.cancel();
+      entry.release();
+    }
+  }
+
+  private synchronized void expire(Entry entry) {
+    remove(entry.key, entry);
+  }
+
+  String stats() {
+    synchronized (this) {
+      return String.format("entries=%d bytes=%d maxBytes=%d hits=%d misses=%d evictions=%d",
+          entries.size(), totalBytes, maxBytes, hits.get(), misses.get(), evictions.get());
+    }
+  }
+
+  long hits() {
+    return hits.get();
+  }
+
+  long misses() {
+    return misses.get();
+  }
+
+  @Override
+  public synchronized void close() {
+    expiryWheel.close();
+    entries.values().forEach(Entry::release);
+    entries.clear();
+    totalBytes = 0;
+    allocator.close();
+  }
+
+  /**
+   * Streams a cached entry by loading each batch into the stream's root.
+   */
+  private static final class CachedBatchSource implements AsyncStreamWriter.BatchSource {
+    private final Entry entry;
+    private final VectorSchemaRoot root;
+    private final VectorLoader loader;
+    private int next;
+    private boolean closed;
+
+    CachedBatchSource(Entry entry, VectorSchemaRoot root) {
+      this.entry = entry;
+      this.root = root;
+      this.loader = new VectorLoader(root);
+    }
+
+    @Override
+    public VectorSchemaRoot root() {
+      return root;
+    }
+
+    @Override
+    public boolean fillNext() {
+      if (next >= entry.batches.size()) {
+        return false;
+      }
+      loader.load(entry.batches.get(next++));
+      return true;
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        root.close();
+        entry.release();
+      }
+    }
+  }
+}
@@ -0,0 +1,296 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A load test scenario: a weighted mix of Flight operations, a load profile made of
+ * phases, and per-operation SLOs. Scenarios are {@code .properties} files (see
+ * {@code scenarios/} for examples):
+ *
+ * <pre>
+ * name=mixed-production
+ * connections=pooled            # or per-request
+ * channels=8
+ * maxInFlight=5000
+ * workers=64                    # threads running requests; more arrivals queue
+ *
+ * # Phases run in order; rate is req/s, "a->b" ramps linearly over the phase
+ * phases=ramp-up,steady,ramp-down
+ * phase.ramp-up.seconds=30
+ * phase.ramp-up.rate=0->200
+ *
+ * # Relative weights, plus per-operation settings
+ * op.doGet.weight=50
+ * op.doGet.ticket=sample?rows=1000
+ *
+ * # Latency SLOs in ms (mean, p50, p90, p99, p99.9, max) and errorRate in percent
+ * slo.doGet.p99=250
+ * slo.doGet.errorRate=0.1
+ * </pre>
+ */
+final class Scenario {
+
+  enum Operation {
+    LIST_FLIGHTS("listFlights"),
+    GET_INFO("getInfo"),
+    DO_GET("doGet"),
+    POLL_START("pollStart"),
+    POLL_CONTINUE("pollContinue"),
+    DO_ACTION("doAction");
+
+    final String key;
+
+    Operation(String key) {
+      this.key = key;
+    }
+
+    static Operation forKey(String key) {
+      for (Operation op : values()) {
+        if (op.key.equals(key)) {
+          return op;
+        }
+      }
+      throw new IllegalArgumentException("Unknown operation '" + key + "'");
+    }
+  }
+
+  /** A stretch of the run with an arrival rate that moves linearly from {@code fromRate} to {@code toRate}. */
+  static final class Phase {
+    final String name;
+    final int seconds;
+    final double fromRate;
+    final double toRate;
+
+    Phase(String name, int seconds, double fromRate, double toRate) {
+      this.name = name;
+      this.seconds = seconds;
+      this.fromRate = fromRate;
+      this.toRate = toRate;
+    }
+
+    double arrivals() {
+      return (fromRate + toRate) / 2 * seconds;
+    }
+
+    double rateAt(double t) {
+      return fromRate + (toRate - fromRate) * t / seconds;
+    }
+
+    // Time into the phase at which the cumulative arrival count reaches n
+    double timeOf(double n) {
+      double a = (toRate - fromRate) / (2.0 * seconds);
+      double b = fromRate;
+      if (Math.abs(a) < 1e-12) {
+        return n / b;
+      }
+      return (-b + Math.sqrt(Math.max(0, b * b + 4 * a * n))) / (2 * a);
+    }
+  }
+
+  /** A latency (ms) or error-rate (%) threshold on one operation. */
+  static final class Slo {
+    final Operation operation;
+    final String metric;
+    final double threshold;
+
+    Slo(Operation operation, String metric, double threshold) {
+      this.operation = operation;
+      this.metric = metric;
+      this.threshold = threshold;
+    }
+  }
+
+  private static final List<String> SLO_METRICS = List.of("mean", "p50", "p90", "p99", "p99.9", "max", "errorRate");
+
+  final String name;
+  final String description;
+  final FlightConnections.Mode connectionMode;
+  final int channels;
+  final int maxInFlight;
+  final int workers;
+  final int maxActivePolls;
+  final List<Phase> phases;
+  final Map<Operation, Integer> weights;
+  final List<Slo> slos;
+  private final Properties props;
+
+  private Scenario(Properties props) {
+    this.props = props;
+    this.name = props.getProperty("name", "scenario");
+    this.description = props.getProperty("description", "");
+    this.connectionMode = "per-request".equals(props.getProperty("connections", "pooled"))
+        ? FlightConnections.Mode.PER_REQUEST : FlightConnections.Mode.POOLED;
+    this.channels = intProp("channels", 4);
+    this.maxInFlight = intProp("maxInFlight", 10000);
+    this.workers = Math.max(1, intProp("workers", 64));
+    this.maxActivePolls = intProp("maxActivePolls", 1000);
+    this.phases = parsePhases();
+    this.weights = parseWeights();
+    this.slos = parseSlos();
+  }
+
+  static Scenario load(Path file) throws IOException {
+    Properties props = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      props.load(reader);
+    }
+    try {
+      return new Scenario(props);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+    }
+  }
+
+  /** Setting {@code op.<operation>.<key>}, e.g. the ticket for doGet. */
+  String opSetting(Operation op, String key, String defaultValue) {
+    return props.getProperty("op." + op.key + "." + key, defaultValue).trim();
+  }
+
+  int totalSeconds() {
+    int total = 0;
+    for (Phase phase : phases) {
+      total += phase.seconds;
+    }
+    return total;
+  }
+
+  long totalArrivals() {
+    double total = 0;
+    for (Phase phase : phases) {
+      total += phase.arrivals();
+    }
+    return (long) total;
+  }
+
+  /** Seconds from the start of the run at which arrival {@code n} (0-based) is due. */
+  double arrivalTime(long n) {
+    double start = 0;
+    double remaining = n;
+    for (Phase phase : phases) {
+      double arrivals = phase.arrivals();
+      if (remaining < arrivals) {
+        return start + phase.timeOf(remaining);
+      }
+      remaining -= arrivals;
+      start += phase.seconds;
+    }
+    return start;
+  }
+
+  /** The phase running at {@code t} seconds into the run, or null once the run is over. */
+  Phase phaseAt(double t) {
+    double start = 0;
+    for (Phase phase : phases) {
+      if (t < start + phase.seconds) {
+        return phase;
+      }
+      start += phase.seconds;
+    }
+    return null;
+  }
+
+  double rateAt(double t) {
+    double start = 0;
+    for (Phase phase : phases) {
+      if (t < start + phase.seconds) {
+        return phase.rateAt(t - start);
+      }
+      start += phase.seconds;
+    }
+    return 0;
+  }
+
+  private List<Phase> parsePhases() {
+    String names = props.getProperty("phases");
+    if (names == null || names.isBlank()) {
+      throw new IllegalArgumentException("no phases defined");
+    }
+    List<Phase> result = new ArrayList<>();
+    for (String raw : names.split(",")) {
+      String phase = raw.trim();
+      int seconds = intProp("phase." + phase + ".seconds", -1);
+      String rate = props.getProperty("phase." + phase + ".rate");
+      if (seconds <= 0 || rate == null) {
+        throw new IllegalArgumentException("phase '" + phase + "' needs .seconds > 0 and .rate");
+      }
+      int arrow = rate.indexOf("->");
+      double from = parseDouble("phase." + phase + ".rate", arrow < 0 ? rate : rate.substring(0, arrow));
+      double to = arrow < 0 ? from : parseDouble("phase." + phase + ".rate", rate.substring(arrow + 2));
+      if (from < 0 || to < 0) {
+        throw new IllegalArgumentException("phase '" + phase + "' has a negative rate");
+      }
+      result.add(new Phase(phase, seconds, from, to));
+    }
+    return Collections.unmodifiableList(result);
+  }
+
+  private Map<Operation, Integer> parseWeights() {
+    Map<Operation, Integer> result = new EnumMap<>(Operation.class);
+    for (Operation op : Operation.values()) {
+      int weight = intProp("op." + op.key + ".weight", 0);
+      if (weight < 0) {
+        throw new IllegalArgumentException("op." + op.key + ".weight must not be negative");
+      }
+      if (weight > 0) {
+        result.put(op, weight);
+      }
+    }
+    if (result.isEmpty()) {
+      throw new IllegalArgumentException("no operation has a weight > 0");
+    }
+    for (String key : props.stringPropertyNames()) {
+      if (key.startsWith("op.")) {
+        Operation.forKey(key.substring(3, Math.max(3, key.indexOf('.', 3))));
+      }
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  private List<Slo> parseSlos() {
+    Map<String, Slo> result = new LinkedHashMap<>();
+    for (String key : props.stringPropertyNames()) {
+      if (!key.startsWith("slo.")) {
+        continue;
+      }
+      int dot = key.indexOf('.', 4);
+      if (dot < 0) {
+        throw new IllegalArgumentException("SLO key must be slo.<operation>.<metric>: " + key);
+      }
+      Operation op = Operation.forKey(key.substring(4, dot));
+      String metric = key.substring(dot + 1);
+      if (!SLO_METRICS.contains(metric)) {
+        throw new IllegalArgumentException("Unknown SLO metric '" + metric + "' (expected one of " + SLO_METRICS + ")");
+      }
+      result.put(key, new Slo(op, metric, parseDouble(key, props.getProperty(key))));
+    }
+    List<Slo> sorted = new ArrayList<>(result.values());
+    sorted.sort((a, b) -> a.operation != b.operation
+        ? a.operation.compareTo(b.operation)
+        : Integer.compare(SLO_METRICS.indexOf(a.metric), SLO_METRICS.indexOf(b.metric)));
+    return Collections.unmodifiableList(sorted);
+  }
+
+  private int intProp(String key, int defaultValue) {
+    String value = props.getProperty(key);
+    return value == null ? defaultValue : (int) parseDouble(key, value);
+  }
+
+  private static double parseDouble(String key, String value) {
+    try {
+      return Double.parseDouble(value.trim().replace("%", ""));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(key + " is not a number: " + value);
+    }
+  }
+}
@@ -0,0 +1,390 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.arrow.flight.Action;
+import org.apache.arrow.flight.Criteria;
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.FlightStream;
+import org.apache.arrow.flight.PollInfo;
+import org.apache.arrow.flight.Ticket;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a {@link Scenario} open-loop: a pacer issues arrivals on the schedule given by
+ * the scenario's phases, each arrival picks an operation by weight, and requests run
+ * on a fixed pool of the scenario's workers. At most maxInFlight requests are running
+ * or queued for a worker; arrivals beyond the cap are counted as missed, and time
+ * spent queued shows up in the corrected latency. At the end every operation is checked against its SLOs, and
+ * the run is written out (and optionally compared) through {@link LoadTestResults}.
+ */
+final class ScenarioRunner {
+
+  private final Scenario scenario;
+  private final String host;
+  private final int port;
+  private final NLBLoadTester.Options options;
+  private final LoadTestResults results;
+  private final Scenario.Operation[] opTable;
+  private final int[] cumulativeWeights;
+
+  private final Map<Scenario.Operation, AtomicLong> attempts = new EnumMap<>(Scenario.Operation.class);
+  private final Map<Scenario.Operation, AtomicLong> errors = new EnumMap<>(Scenario.Operation.class);
+  private final AtomicLong missedArrivals = new AtomicLong();
+  private final AtomicInteger loggedErrors = new AtomicInteger();
+  // Queries started by pollStart that pollContinue can follow up on
+  private final Queue<FlightDescriptor> activePolls = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger activePollCount = new AtomicInteger();
+
+  private final Queue<NLBLoadTester.OperationHistograms> threadHistograms = new ConcurrentLinkedQueue<>();
+  private final ThreadLocal<NLBLoadTester.OperationHistograms> localHistograms = ThreadLocal.withInitial(() -> {
+    NLBLoadTester.OperationHistograms histograms = new NLBLoadTester.OperationHistograms();
+    threadHistograms.add(histograms);
+    return histograms;
+  });
+
+  private FlightConnections connections;
+
+  ScenarioRunner(Scenario scenario, NLBLoadTester.Options options) {
+    this.scenario = scenario;
+    this.host = options.host;
+    this.port = options.port;
+    this.options = options;
+    this.results = new LoadTestResults(scenario.name);
+    results.config()
+        .put("host", host)
+        .put("port", port)
+        .put("connections", scenario.connectionMode == FlightConnections.Mode.POOLED ? "pooled" : "per-request")
+        .put("channels", scenario.channels)
+        .put("maxInFlight", scenario.maxInFlight)
+        .put("workers", scenario.workers);
+    ObjectNode weights = results.config().putObject("weights");
+    scenario.weights.forEach((op, weight) -> weights.put(op.key, weight));
+    this.opTable = scenario.weights.keySet().toArray(new Scenario.Operation[0]);
+    this.cumulativeWeights = new int[opTable.length];
+    int total = 0;
+    for (int i = 0; i < opTable.length; i++) {
+      total += scenario.weights.get(opTable[i]);
+      cumulativeWeights[i] = total;
+    }
+    for (Scenario.Operation op : Scenario.Operation.values()) {
+      attempts.put(op, new AtomicLong());
+      errors.put(op, new AtomicLong());
+    }
+  }
+
+  /**
+   * Runs the scenario, prints the report and writes the JSON/CSV results.
+   *
+   * @return true if every SLO was met and, if a baseline was given, nothing regressed
+   */
+  boolean run() throws Exception {
+    try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+         FlightConnections connections = new FlightConnections(
+             scenario.connectionMode, host, port, scenario.channels, allocator)) {
+      this.connections = connections;
+      printHeader();
+      results.start(() -> totalOf(attempts), () -> totalOf(errors));
+      runPhases();
+      boolean slosMet = report();
+      Path json = results.write(options.resultsPrefix != null
+          ? Paths.get(options.resultsPrefix) : LoadTestResults.defaultPrefix(scenario.name));
+      System.out.println("💾 Results written to " + json + " (time series also as .csv)");
+      boolean noRegression = options.compareBaseline == null
+          || results.compare(Paths.get(options.compareBaseline), options.tolerancePercent);
+      return slosMet && noRegression;
+    }
+  }
+
+  private void printHeader() {
+    System.out.println("🧪 Scenario: " + scenario.name);
+    System.out.println("======================================");
+    if (!scenario.description.isEmpty()) {
+      System.out.println(scenario.description);
+    }
+    System.out.println("Host: " + host + ":" + port);
+    System.out.println("Connections: " + (scenario.connectionMode == FlightConnections.Mode.POOLED
+        ? scenario.channels + " pooled channels" : "new channel per request"));
+    System.out.println("Max in flight: " + scenario.maxInFlight + " (" + scenario.workers + " workers)");
+    System.out.println("Phases:");
+    for (Scenario.Phase phase : scenario.phases) {
+      System.out.println(String.format("  %-12s %5ds  %.1f -> %.1f req/s", phase.name, phase.seconds,
+          phase.fromRate, phase.toRate));
+    }
+    System.out.println("Mix:");
+    int totalWeight = cumulativeWeights[cumulativeWeights.length - 1];
+    scenario.weights.forEach((op, weight) ->
+        System.out.println(String.format("  %-12s %5.1f%%", op.key, 100.0 * weight / totalWeight)));
+    System.out.println();
+  }
+
+  private void runPhases() throws InterruptedException {
+    ScheduledExecutorService pacer = Executors.newSingleThreadScheduledExecutor();
+    ExecutorService dispatcher = Executors.newFixedThreadPool(scenario.workers);
+    Semaphore inFlight = new Semaphore(scenario.maxInFlight);
+    long totalArrivals = scenario.totalArrivals();
+    long startNanos = System.nanoTime();
+    long[] issued = {0}; // only touched by the pacer thread
+
+    pacer.scheduleAtFixedRate(() -> {
+      double elapsed = (System.nanoTime() - startNanos) / 1e9;
+      while (issued[0] < totalArrivals) {
+        double due = scenario.arrivalTime(issued[0]);
+        if (due > elapsed) {
+          break;
+        }
+        issued[0]++;
+        long intendedStart = startNanos + (long) (due * 1e9);
+        Scenario.Operation op = pickOperation();
+        if (!inFlight.tryAcquire()) {
+          missedArrivals.incrementAndGet();
+          continue;
+        }
+        dispatcher.execute(() -> {
+          try {
+            perform(op, intendedStart);
+          } finally {
+            inFlight.release();
+          }
+        });
+      }
+    }, 0, 1, TimeUnit.MILLISECONDS);
+
+    Scenario.Phase current = null;
+    for (int second = 0; second < scenario.totalSeconds(); second++) {
+      Scenario.Phase phase = scenario.phaseAt(second);
+      if (phase != current) {
+        current = phase;
+        System.out.println("▶️  Phase " + phase.name + " (" + phase.seconds + "s, "
+            + phase.fromRate + " -> " + phase.toRate + " req/s)");
+      }
+      Thread.sleep(1000);
+      if ((second + 1) % 10 == 0) {
+        System.out.printf("⏰ %ds elapsed - target %.1f req/s, completed %d, errors %d, in flight %d%n",
+            second + 1, scenario.rateAt(second + 1), totalOf(attempts), totalOf(errors),
+            scenario.maxInFlight - inFlight.availablePermits());
+      }
+    }
+
+    pacer.shutdown();
+    pacer.awaitTermination(5, TimeUnit.SECONDS);
+    System.out.println("⏳ Waiting for " + (scenario.maxInFlight - inFlight.availablePermits()) + " in-flight requests...");
+    dispatcher.shutdown();
+    if (!dispatcher.awaitTermination(2, TimeUnit.MINUTES)) {
+      System.err.println("Gave up waiting for in-flight requests");
+      dispatcher.shutdownNow();
+    }
+  }
+
+  private Scenario.Operation pickOperation() {
+    int roll = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+    for (int i = 0; i < cumulativeWeights.length; i++) {
+      if (roll < cumulativeWeights[i]) {
+        return opTable[i];
+      }
+    }
+    return opTable[opTable.length - 1];
+  }
+
+  private void perform(Scenario.Operation op, long intendedStartNanos) {
+    NLBLoadTester.OperationHistograms histograms = localHistograms.get();
+    try (FlightConnections.Lease lease = connections.acquire()) {
+      if (scenario.connectionMode == FlightConnections.Mode.PER_REQUEST) {
+        record(histograms, NLBLoadTester.OP_CONNECT, lease.connectNanos());
+      }
+      FlightClient client = lease.client();
+      if (op == Scenario.Operation.POLL_CONTINUE && activePolls.isEmpty()) {
+        op = Scenario.Operation.POLL_START; // nothing to continue yet
+      }
+      attempts.get(op).incrementAndGet();
+      long startNanos = System.nanoTime();
+      try {
+        execute(op, client);
+      } catch (Exception e) {
+        errors.get(op).incrementAndGet();
+        results.recordError(op.key, e);
+        if (loggedErrors.incrementAndGet() <= 10) {
+          System.err.println(op.key + " error: " + e.getMessage());
+        }
+        return;
+      }
+      long endNanos = System.nanoTime();
+      record(histograms, op.key, endNanos - startNanos);
+      record(histograms, NLBLoadTester.OP_REQUEST_CORRECTED, endNanos - intendedStartNanos);
+    } catch (Exception e) {
+      // Could not connect: counted against the operation that was picked
+      attempts.get(op).incrementAndGet();
+      errors.get(op).incrementAndGet();
+      results.recordError(NLBLoadTester.OP_CONNECT, e);
+      if (loggedErrors.incrementAndGet() <= 10) {
+        System.err.println("connect error: " + e.getMessage());
+      }
+    }
+  }
+
+  private void record(NLBLoadTester.OperationHistograms histograms, String operation, long nanos) {
+    histograms.record(operation, nanos);
+    results.recordLatency(operation, nanos);
+  }
+
+  private void execute(Scenario.Operation op, FlightClient client) throws Exception {
+    switch (op) {
+      case LIST_FLIGHTS:
+        for (FlightInfo ignored : client.listFlights(Criteria.ALL)) {
+          // Drain the listing
+        }
+        break;
+      case GET_INFO:
+        client.getInfo(FlightDescriptor.path(scenario.opSetting(op, "flight", "sample")));
+        break;
+      case DO_GET:
+        Ticket ticket = new Ticket(scenario.opSetting(op, "ticket", "sample").getBytes(StandardCharsets.UTF_8));
+        try (FlightStream stream = client.getStream(ticket)) {
+          while (stream.next()) {
+            // Data received successfully
+          }
+        }
+        break;
+      case POLL_START:
+        PollInfo started = client.pollInfo(FlightDescriptor.path(scenario.opSetting(op, "query", "long-query")));
+        started.getFlightDescriptor().ifPresent(this::trackPoll);
+        break;
+      case POLL_CONTINUE:
+        FlightDescriptor descriptor = activePolls.poll();
+        if (descriptor == null) {
+          return;
+        }
+        activePollCount.decrementAndGet();
+        client.pollInfo(descriptor).getFlightDescriptor().ifPresent(this::trackPoll);
+        break;
+      case DO_ACTION:
+        String type = scenario.opSetting(op, "type", "echo");
+        byte[] body = scenario.opSetting(op, "body", "").getBytes(StandardCharsets.UTF_8);
+        Iterator<?> results = client.doAction(new Action(type, body));
+        while (results.hasNext()) {
+          results.next();
+        }
+        break;
+      default:
+        throw new IllegalStateException("Unhandled operation " + op);
+    }
+  }
+
+  // Keep a query for later pollContinue calls, up to maxActivePolls (the rest are left to expire)
+  private void trackPoll(FlightDescriptor descriptor) {
+    if (activePollCount.incrementAndGet() <= scenario.maxActivePolls) {
+      activePolls.add(descriptor);
+    } else {
+      activePollCount.decrementAndGet();
+    }
+  }
+
+  private boolean report() {
+    NLBLoadTester.OperationHistograms merged = new NLBLoadTester.OperationHistograms();
+    for (NLBLoadTester.OperationHistograms histograms : threadHistograms) {
+      histograms.mergeInto(merged);
+    }
+    int seconds = scenario.totalSeconds();
+    long total = totalOf(attempts);
+    long failed = totalOf(errors);
+    results.finish(seconds, total, total - failed, failed, merged.all());
+
+    System.out.println();
+    System.out.println("📊 Scenario Results: " + scenario.name);
+    System.out.println("===================");
+    System.out.println("Duration: " + seconds + " seconds");
+    System.out.println("Intended: " + scenario.totalArrivals() + " requests ("
+        + String.format("%.2f", (double) scenario.totalArrivals() / seconds) + " req/s)");
+    System.out.println("Completed: " + total + " (" + String.format("%.2f", (double) total / seconds) + " req/s), "
+        + failed + " failed, " + missedArrivals.get() + " missed (in-flight cap of " + scenario.maxInFlight + " reached)");
+    System.out.println();
+    System.out.println("Latency (ms):");
+    System.out.println(String.format("  %-22s %8s %7s %9s %9s %9s %9s %9s %9s",
+        "Operation", "Count", "Errors", "Mean", "p50", "p90", "p99", "p99.9", "Max"));
+    for (Scenario.Operation op : Scenario.Operation.values()) {
+      long count = attempts.get(op).get();
+      if (count == 0) {
+        continue;
+      }
+      LatencyHistogram h = histogram(merged, op.key);
+      System.out.println(String.format("  %-22s %8d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f",
+          op.key, count, errors.get(op).get(), h.mean() / 1e6,
+          h.valueAtPercentile(50) / 1e6, h.valueAtPercentile(90) / 1e6,
+          h.valueAtPercentile(99) / 1e6, h.valueAtPercentile(99.9) / 1e6, h.max() / 1e6));
+    }
+    for (String extra : new String[] {NLBLoadTester.OP_CONNECT, NLBLoadTester.OP_REQUEST_CORRECTED}) {
+      LatencyHistogram h = merged.get(extra);
+      if (h != null) {
+        System.out.println(String.format("  %-22s %8d %7s %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f",
+            extra, h.count(), "", h.mean() / 1e6,
+            h.valueAtPercentile(50) / 1e6, h.valueAtPercentile(90) / 1e6,
+            h.valueAtPercentile(99) / 1e6, h.valueAtPercentile(99.9) / 1e6, h.max() / 1e6));
+      }
+    }
+    System.out.println();
+
+    if (scenario.slos.isEmpty()) {
+      System.out.println("No SLOs defined");
+      return true;
+    }
+    System.out.println("SLOs:");
+    boolean allMet = true;
+    for (Scenario.Slo slo : scenario.slos) {
+      long count = attempts.get(slo.operation).get();
+      if (count == 0) {
+        System.out.println("  ⚠️  " + slo.operation.key + " " + slo.metric + ": no requests, not checked");
+        continue;
+      }
+      double actual = actual(slo, histogram(merged, slo.operation.key), count);
+      boolean met = actual <= slo.threshold;
+      allMet &= met;
+      String unit = "errorRate".equals(slo.metric) ? "%" : " ms";
+      System.out.println(String.format("  %s %s %s: %.2f%s (limit %.2f%s)", met ? "✅" : "❌",
+          slo.operation.key, slo.metric, actual, unit, slo.threshold, unit));
+    }
+    System.out.println();
+    System.out.println(allMet ? "🏁 All SLOs met" : "❌ SLOs violated");
+    return allMet;
+  }
+
+  private double actual(Scenario.Slo slo, LatencyHistogram h, long count) {
+    switch (slo.metric) {
+      case "errorRate": return 100.0 * errors.get(slo.operation).get() / count;
+      case "mean": return h.mean() / 1e6;
+      case "max": return h.max() / 1e6;
+      default: return h.valueAtPercentile(Double.parseDouble(slo.metric.substring(1))) / 1e6;
+    }
+  }
+
+  private static LatencyHistogram histogram(NLBLoadTester.OperationHistograms merged, String op) {
+    LatencyHistogram h = merged.get(op);
+    return h != null ? h : new LatencyHistogram();
+  }
+
+  private static long totalOf(Map<Scenario.Operation, AtomicLong> counters) {
+    long total = 0;
+    for (AtomicLong counter : counters.values()) {
+      total += counter.get();
+    }
+    return total;
+  }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Generates the sample "value" column: row i holds {@code i * step}, starting at row
+ * {@code firstRow} (a partition or a later slice of the result).
+ *
+ * The result is streamed in batches of at most {@code batchSize} rows through a single
+ * root whose buffers are allocated once and reset between batches, so memory stays
+ * constant however many rows the ticket asks for.
+ */
+final class SequenceBatchSource implements AsyncStreamWriter.BatchSource {
+  private final VectorSchemaRoot root;
+  private final IntVector valueVector;
+  private final long firstRow;
+  private final long totalRows;
+  private final int batchSize;
+  private final int step;
+  private final boolean reuseBuffers;
+  private long nextRow;
+
+  SequenceBatchSource(Schema schema, BufferAllocator allocator, long totalRows, int batchSize, int step) {
+    this(schema, allocator, 0, totalRows, batchSize, step, true);
+  }
+
+  /**
+   * @param firstRow     row number of the first row generated
+   * @param totalRows    rows to generate from there
+   * @param reuseBuffers false to allocate fresh buffers for every batch, for callers
+   *                     that keep the batches (e.g. {@link ResultCache})
+   */
+  SequenceBatchSource(Schema schema, BufferAllocator allocator, long firstRow, long totalRows, int batchSize,
+                      int step, boolean reuseBuffers) {
+    this.root = VectorSchemaRoot.create(schema, allocator);
+    this.valueVector = (IntVector) root.getVector("value");
+    this.firstRow = firstRow;
+    this.totalRows = totalRows;
+    this.batchSize = (int) Math.max(1, Math.min(batchSize, totalRows));
+    this.step = step;
+    this.reuseBuffers = reuseBuffers;
+    if (reuseBuffers) {
+      try {
+        valueVector.allocateNew(this.batchSize);
+      } catch (RuntimeException e) {
+        root.close();
+        throw e;
+      }
+    }
+  }
+
+  @Override
+  public VectorSchemaRoot root() {
+    return root;
+  }
+
+  @Override
+  public boolean fillNext() {
+    if (nextRow >= totalRows) {
+      return false;
+    }
+    int count = (int) Math.min(batchSize, totalRows - nextRow);
+
+    if (reuseBuffers) {
+      // Reuse the buffers from allocateNew(): reset() zeroes them without releasing
+      valueVector.reset();
+    } else {
+      valueVector.allocateNew(count);
+    }
+    for (int i = 0; i < count; i++) {
+      valueVector.set(i, (int) ((firstRow + nextRow + i) * step));
+    }
+    valueVector.setValueCount(count);
+    root.setRowCount(count);
+
+    nextRow += count;
+    return true;
+  }
+
+  @Override
+  public void close() {
+    root.close();
+  }
+}
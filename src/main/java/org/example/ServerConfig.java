@@ -0,0 +1,156 @@
+package org.example;
+
+import org.apache.arrow.flight.Location;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Server tuning knobs, read from {@code -Dflight.*} system properties so the
+ * shell scripts and the AWS user-data can override them without code changes.
+ */
+final class ServerConfig {
+  final String host;
+  final int port;
+  // Where endpoints tell clients to fetch from, e.g. the NLB or NlbProxy in front of this server
+  final String advertiseHost;
+  final int advertisePort;
+
+  // Query execution
+  final int queryWorkerThreads;
+  final int maxConcurrentQueries;
+  final int maxQueuedQueries;
+  final Map<String, Integer> queryTypeLimits;
+  final int maxOutstandingQueries;
+  final long querySweepTickMs;
+  final long queryPartitionMs;
+  final long pollMaxWaitMs;
+  final int pollMaxWaiters;
+  final long pollMinIntervalMs;
+  final long pollMaxIntervalMs;
+  final long subscribeHeartbeatMs;
+
+  // Streaming
+  final int streamTimerThreads;
+  final long sampleDelayMs;
+  final int defaultBatchRows;
+  final int maxBatchRows;
+  final long partitionRows;
+  final int maxPartitions;
+
+  // Memory
+  final long memoryMaxBytes;
+  final long callMemoryLimitBytes;
+  final long queryMemoryLimitBytes;
+
+  // Result cache
+  final long cacheMaxBytes;
+  final long cacheMaxEntryBytes;
+  final long cacheTtlMs;
+
+  private ServerConfig(Map<String, String> props) {
+    this.host = props.getOrDefault("flight.host", "0.0.0.0").trim();
+    this.port = intProp(props, "flight.port", 8815, 0);
+    this.advertiseHost = props.getOrDefault("flight.advertiseHost", "localhost").trim();
+    this.advertisePort = intProp(props, "flight.advertisePort", port, 1);
+    this.queryWorkerThreads = intProp(props, "flight.query.workerThreads",
+        Math.max(2, Runtime.getRuntime().availableProcessors() / 2), 1);
+    this.maxConcurrentQueries = intProp(props, "flight.query.maxConcurrent", 1000, 1);
+    this.maxQueuedQueries = intProp(props, "flight.query.maxQueued", 10000, 0);
+    this.queryTypeLimits = parseLimits(props.get("flight.query.typeLimits"));
+    this.maxOutstandingQueries = intProp(props, "flight.query.maxOutstanding", 20000, 1);
+    this.querySweepTickMs = longProp(props, "flight.query.sweepTickMs", 1000, 1);
+    this.queryPartitionMs = longProp(props, "flight.query.partitionMs", 60000, 1);
+    this.pollMaxWaitMs = longProp(props, "flight.poll.maxWaitMs", 30000, 0);
+    this.pollMaxWaiters = intProp(props, "flight.poll.maxWaiters", 10000, 0);
+    this.pollMinIntervalMs = longProp(props, "flight.poll.minIntervalMs", 500, 1);
+    this.pollMaxIntervalMs = longProp(props, "flight.poll.maxIntervalMs", 30000, pollMinIntervalMs);
+    this.subscribeHeartbeatMs = longProp(props, "flight.subscribe.heartbeatMs", 60000, 1);
+    this.streamTimerThreads = intProp(props, "flight.stream.timerThreads", 2, 1);
+    this.sampleDelayMs = intProp(props, "flight.stream.sampleDelayMs", 70000, 0);
+    this.defaultBatchRows = intProp(props, "flight.stream.defaultBatchRows", 65536, 1);
+    this.maxBatchRows = intProp(props, "flight.stream.maxBatchRows", 1 << 20, 1);
+    this.partitionRows = longProp(props, "flight.stream.partitionRows", 4L << 20, 1);
+    this.maxPartitions = intProp(props, "flight.stream.maxPartitions", 64, 1);
+    this.memoryMaxBytes = longProp(props, "flight.memory.maxBytes", Long.MAX_VALUE, 1);
+    this.callMemoryLimitBytes = longProp(props, "flight.memory.callLimitBytes", 256L << 20, 1);
+    this.queryMemoryLimitBytes = longProp(props, "flight.memory.queryLimitBytes", 64L << 20, 1);
+    this.cacheMaxBytes = longProp(props, "flight.cache.maxBytes", 256L << 20, 0);
+    this.cacheMaxEntryBytes = longProp(props, "flight.cache.maxEntryBytes", 16L << 20, 0);
+    this.cacheTtlMs = longProp(props, "flight.cache.ttlMs", 600000, 1);
+  }
+
+  static ServerConfig fromSystemProperties() {
+    Map<String, String> props = new HashMap<>();
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (name.startsWith("flight.")) {
+        props.put(name, System.getProperty(name));
+      }
+    }
+    return new ServerConfig(props);
+  }
+
+  /** The location advertised in every FlightEndpoint this server hands out. */
+  Location endpointLocation() {
+    return Location.forGrpcInsecure(advertiseHost, advertisePort);
+  }
+
+  static ServerConfig of(Map<String, String> props) {
+    return new ServerConfig(props);
+  }
+
+  private static int intProp(Map<String, String> props, String name, int defaultValue, int min) {
+    return (int) longProp(props, name, defaultValue, min, Integer.MAX_VALUE);
+  }
+
+  private static long longProp(Map<String, String> props, String name, long defaultValue, long min) {
+    return longProp(props, name, defaultValue, min, Long.MAX_VALUE);
+  }
+
+  // Out-of-range values are rejected here rather than failing later, e.g. dividing by a zero interval
+  private static long longProp(Map<String, String> props, String name, long defaultValue, long min, long max) {
+    String value = props.get(name);
+    if (value == null || value.isBlank()) {
+      return defaultValue;
+    }
+    long parsed;
+    try {
+      parsed = Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+    }
+    if (parsed < min) {
+      throw new IllegalArgumentException("Invalid value for " + name + ": " + value + " (must be at least " + min + ")");
+    }
+    if (parsed > max) {
+      throw new IllegalArgumentException("Invalid value for " + name + ": " + value + " (must be at most " + max + ")");
+    }
+    return parsed;
+  }
+
+  // Format: "ultra-long-query:50,very-long-query:200"
+  private static Map<String, Integer> parseLimits(String value) {
+    if (value == null || value.isBlank()) {
+      return Collections.emptyMap();
+    }
+    Map<String, Integer> limits = new HashMap<>();
+    for (String entry : value.split(",")) {
+      String[] parts = entry.trim().split(":");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid query type limit: " + entry);
+      }
+      int limit;
+      try {
+        limit = Integer.parseInt(parts[1].trim());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid query type limit: " + entry, e);
+      }
+      if (limit < 1) {
+        throw new IllegalArgumentException("Invalid query type limit: " + entry + " (must be at least 1)");
+      }
+      limits.put(parts[0].trim(), limit);
+    }
+    return Collections.unmodifiableMap(limits);
+  }
+}
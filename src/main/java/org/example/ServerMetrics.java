@@ -0,0 +1,173 @@
+package org.example;
+
+import org.apache.arrow.flight.FlightMethod;
+import org.apache.arrow.flight.FlightStatusCode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-RPC counters and latency histograms, fed by {@link MetricsMiddleware}.
+ *
+ * All counters are pre-allocated per {@link FlightMethod}, so recording is a map
+ * lookup plus atomic updates. {@link #toJson()} and {@link #toPrometheus()} render
+ * a snapshot for the "metrics" action.
+ */
+final class ServerMetrics {
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+  private static final FlightStatusCode[] STATUS_CODES = FlightStatusCode.values();
+
+  static final class MethodMetrics {
+    final String name;
+    final LatencyHistogram latencyNanos = new LatencyHistogram();
+    final AtomicLong inFlight = new AtomicLong();
+    final AtomicLong bytesSent = new AtomicLong();
+    final AtomicLong batchesSent = new AtomicLong();
+    final AtomicLongArray errors = new AtomicLongArray(STATUS_CODES.length);
+
+    private MethodMetrics(String name) {
+      this.name = name;
+    }
+
+    void callStarted() {
+      inFlight.incrementAndGet();
+    }
+
+    void callCompleted(long elapsedNanos, FlightStatusCode code) {
+      inFlight.decrementAndGet();
+      latencyNanos.record(elapsedNanos);
+      if (code != FlightStatusCode.OK) {
+        errors.incrementAndGet(code.ordinal());
+      }
+    }
+
+    void batchSent(long bytes) {
+      batchesSent.incrementAndGet();
+      bytesSent.addAndGet(bytes);
+    }
+  }
+
+  private final Map<FlightMethod, MethodMetrics> methods = new EnumMap<>(FlightMethod.class);
+  private final long startedAt = System.currentTimeMillis();
+
+  ServerMetrics() {
+    for (FlightMethod method : FlightMethod.values()) {
+      methods.put(method, new MethodMetrics(producerMethodName(method)));
+    }
+  }
+
+  MethodMetrics forMethod(FlightMethod method) {
+    return methods.get(method);
+  }
+
+  // Names as they appear on FlightProducer, which is what the server logs talk about
+  private static String producerMethodName(FlightMethod method) {
+    switch (method) {
+      case HANDSHAKE: return "handshake";
+      case LIST_FLIGHTS: return "listFlights";
+      case GET_FLIGHT_INFO: return "getFlightInfo";
+      case POLL_FLIGHT_INFO: return "pollFlightInfo";
+      case GET_SCHEMA: return "getSchema";
+      case DO_GET: return "getStream";
+      case DO_PUT: return "acceptPut";
+      case DO_EXCHANGE: return "doExchange";
+      case DO_ACTION: return "doAction";
+      case LIST_ACTIONS: return "listActions";
+      default: return method.name();
+    }
+  }
+
+  String toJson() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"uptimeMs\":").append(System.currentTimeMillis() - startedAt).append(",\"methods\":{");
+    boolean first = true;
+    for (MethodMetrics m : methods.values()) {
+      LatencyHistogram h = m.latencyNanos;
+      if (h.count() == 0 && m.inFlight.get() == 0) {
+        continue;
+      }
+      if (!first) {
+        sb.append(',');
+      }
+      first = false;
+      sb.append('"').append(m.name).append("\":{")
+          .append("\"calls\":").append(h.count())
+          .append(",\"inFlight\":").append(m.inFlight.get())
+          .append(",\"bytesSent\":").append(m.bytesSent.get())
+          .append(",\"batchesSent\":").append(m.batchesSent.get())
+          .append(",\"latencyMs\":{")
+          .append("\"mean\":").append(toMillis(h.mean()));
+      for (double p : PERCENTILES) {
+        sb.append(",\"p").append(percentileLabel(p)).append("\":").append(toMillis(h.valueAtPercentile(p)));
+      }
+      sb.append(",\"max\":").append(toMillis(h.max())).append("},\"errors\":{");
+      boolean firstError = true;
+      for (FlightStatusCode code : STATUS_CODES) {
+        long count = m.errors.get(code.ordinal());
+        if (count > 0) {
+          if (!firstError) {
+            sb.append(',');
+          }
+          firstError = false;
+          sb.append('"').append(code.name()).append("\":").append(count);
+        }
+      }
+      sb.append("}}");
+    }
+    return sb.append("}}").toString();
+  }
+
+  /**
+   * Prometheus text exposition format (version 0.0.4).
+   */
+  String toPrometheus() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("# TYPE flight_rpc_latency_seconds summary\n");
+    for (MethodMetrics m : methods.values()) {
+      LatencyHistogram h = m.latencyNanos;
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        sb.append("flight_rpc_latency_seconds{method=\"").append(m.name).append("\",quantile=\"")
+            .append(QUANTILE_LABELS[i]).append("\"} ").append(h.valueAtPercentile(PERCENTILES[i]) / 1e9).append('\n');
+      }
+      sb.append("flight_rpc_latency_seconds_sum{method=\"").append(m.name).append("\"} ")
+          .append(h.sum() / 1e9).append('\n');
+      sb.append("flight_rpc_latency_seconds_count{method=\"").append(m.name).append("\"} ")
+          .append(h.count()).append('\n');
+    }
+    appendPerMethod(sb, "flight_rpc_in_flight", "gauge", m -> m.inFlight.get());
+    appendPerMethod(sb, "flight_rpc_bytes_sent_total", "counter", m -> m.bytesSent.get());
+    appendPerMethod(sb, "flight_rpc_batches_sent_total", "counter", m -> m.batchesSent.get());
+    sb.append("# TYPE flight_rpc_errors_total counter\n");
+    for (MethodMetrics m : methods.values()) {
+      for (FlightStatusCode code : STATUS_CODES) {
+        long count = m.errors.get(code.ordinal());
+        if (count > 0) {
+          sb.append("flight_rpc_errors_total{method=\"").append(m.name).append("\",code=\"")
+              .append(code.name()).append("\"} ").append(count).append('\n');
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  private void appendPerMethod(StringBuilder sb, String metric, String type,
+                           ToLongFunction<MethodMetrics> value) {
+    sb.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    for (MethodMetrics m : methods.values()) {
+      sb.append(metric).append("{method=\"").append(m.name).append("\"} ")
+          .append(value.applyAsLong(m)).append('\n');
+    }
+  }
+
+  private static String percentileLabel(double p) {
+    return p == Math.rint(p) ? String.valueOf((long) p) : String.valueOf(p).replace(".", "");
+  }
+
+  private static double toMillis(double nanos) {
+    return Math.round(nanos / 1000.0) / 1000.0;
+  }
+}
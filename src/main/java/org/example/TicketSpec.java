@@ -0,0 +1,199 @@
+package org.example;
+
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.Ticket;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ticket and descriptor-path format:
+ * {@code name[?rows=N&batch=M&offset=K&partitions=P&resumeBatch=B&resumeRow=R&compression=C]}.
+ *
+ * Plain names ("sample", "poll-query-3-result") stay valid, so older clients keep
+ * working; the optional parameters let a client ask for a larger result streamed in
+ * batches of a given size. {@code offset} selects rows K..K+N-1 of the result, which
+ * is how partition tickets address their slice. {@code partitions} only applies to
+ * descriptors: it asks getFlightInfo to split the result into P endpoints.
+ * {@code resumeBatch}/{@code resumeRow} restart a stream after the first B batches
+ * (R rows) of the ticket's result, which the client already has. {@code compression}
+ * (none, lz4, zstd) selects stream compression and is carried over to the
+ * partition and resume tickets derived from a spec.
+ */
+final class TicketSpec {
+  static final long DEFAULT = -1;
+
+  final String name;
+  final long rows;      // DEFAULT = the flight's own row count
+  final int batchSize;  // DEFAULT = server default batch size
+  final long offset;    // first row of the result to send
+  final int partitions; // DEFAULT = server decides from the row count
+  final long resumeBatch; // batches of the result already received
+  final long resumeRow;   // rows of the result already received
+  final String compression; // null = not requested on the ticket
+
+  private TicketSpec(String name, long rows, int batchSize, long offset, int partitions,
+                     long resumeBatch, long resumeRow, String compression) {
+    this.name = name;
+    this.rows = rows;
+    this.batchSize = batchSize;
+    this.offset = offset;
+    this.partitions = partitions;
+    this.resumeBatch = resumeBatch;
+    this.resumeRow = resumeRow;
+    this.compression = compression;
+  }
+
+  static TicketSpec of(String name) {
+    return new TicketSpec(name, DEFAULT, (int) DEFAULT, 0, (int) DEFAULT, 0, 0, null);
+  }
+
+  static TicketSpec parse(Ticket ticket) {
+    return parse(new String(ticket.getBytes(), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @throws org.apache.arrow.flight.FlightRuntimeException INVALID_ARGUMENT on a malformed spec
+   */
+  static TicketSpec parse(String value) {
+    int query = value.indexOf('?');
+    if (query < 0) {
+      return of(value);
+    }
+
+    String name = value.substring(0, query);
+    long rows = DEFAULT;
+    int batchSize = (int) DEFAULT;
+    long offset = 0;
+    int partitions = (int) DEFAULT;
+    long resumeBatch = 0;
+    long resumeRow = 0;
+    String compression = null;
+    for (String param : value.substring(query + 1).split("&")) {
+      if (param.isEmpty()) {
+        continue;
+      }
+      int eq = param.indexOf('=');
+      String key = eq < 0 ? param : param.substring(0, eq);
+      String raw = eq < 0 ? "" : param.substring(eq + 1);
+      try {
+        switch (key) {
+          case "rows":
+            rows = Long.parseLong(raw);
+            break;
+          case "batch":
+            batchSize = Integer.parseInt(raw);
+            break;
+          case "offset":
+            offset = Long.parseLong(raw);
+            break;
+          case "partitions":
+            partitions = Integer.parseInt(raw);
+            break;
+          case "resumeBatch":
+            resumeBatch = Long.parseLong(raw);
+            break;
+          case "resumeRow":
+            resumeRow = Long.parseLong(raw);
+            break;
+          case "compression":
+            BatchCompression.encoding(raw);
+            compression = raw;
+            break;
+          default:
+            throw invalid(value, "unknown parameter '" + key + "'");
+        }
+      } catch (NumberFormatException e) {
+        throw invalid(value, "bad number for '" + key + "'");
+      } catch (FlightRuntimeException e) {
+        throw invalid(value, "unknown compression '" + raw + "'");
+      }
+    }
+    if (rows < DEFAULT || batchSize == 0 || batchSize < DEFAULT) {
+      throw invalid(value, "rows and batch must be positive");
+    }
+    if (offset < 0) {
+      throw invalid(value, "offset must not be negative");
+    }
+    if (partitions == 0 || partitions < DEFAULT) {
+      throw invalid(value, "partitions must be positive");
+    }
+    if (resumeBatch < 0 || resumeRow < 0 || (rows != DEFAULT && resumeRow > rows)) {
+      throw invalid(value, "resume position out of range");
+    }
+    return new TicketSpec(name, rows, batchSize, offset, partitions, resumeBatch, resumeRow, compression);
+  }
+
+  TicketSpec withName(String newName) {
+    return new TicketSpec(newName, rows, batchSize, offset, partitions, resumeBatch, resumeRow, compression);
+  }
+
+  /** The slice of {@code count} rows starting at {@code first}, same name, batch size and compression. */
+  TicketSpec withRange(long first, long count) {
+    return new TicketSpec(name, count, batchSize, first, (int) DEFAULT, 0, 0, compression);
+  }
+
+  /** The same result, restarted after {@code batches} batches holding {@code rowsReceived} rows. */
+  TicketSpec withResume(long batches, long rowsReceived) {
+    return new TicketSpec(name, rows, batchSize, offset, partitions, batches, rowsReceived, compression);
+  }
+
+  /** The same result with a different compression; null drops the parameter. */
+  TicketSpec withCompression(String newCompression) {
+    return new TicketSpec(name, rows, batchSize, offset, partitions, resumeBatch, resumeRow, newCompression);
+  }
+
+  boolean isResume() {
+    return resumeRow > 0 || resumeBatch > 0;
+  }
+
+  long rowsOr(long defaultRows) {
+    return rows == DEFAULT ? defaultRows : rows;
+  }
+
+  int batchSizeOr(int defaultBatchSize) {
+    return batchSize == DEFAULT ? defaultBatchSize : batchSize;
+  }
+
+  String encode() {
+    StringBuilder sb = new StringBuilder(name);
+    char sep = '?';
+    if (rows != DEFAULT) {
+      sb.append(sep).append("rows=").append(rows);
+      sep = '&';
+    }
+    if (batchSize != DEFAULT) {
+      sb.append(sep).append("batch=").append(batchSize);
+      sep = '&';
+    }
+    if (offset > 0) {
+      sb.append(sep).append("offset=").append(offset);
+      sep = '&';
+    }
+    if (partitions != DEFAULT) {
+      sb.append(sep).append("partitions=").append(partitions);
+      sep = '&';
+    }
+    if (isResume()) {
+      sb.append(sep).append("resumeBatch=").append(resumeBatch).append("&resumeRow=").append(resumeRow);
+      sep = '&';
+    }
+    if (compression != null) {
+      sb.append(sep).append("compression=").append(compression);
+    }
+    return sb.toString();
+  }
+
+  Ticket toTicket() {
+    return new Ticket(encode().getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public String toString() {
+    return encode();
+  }
+
+  private static RuntimeException invalid(String value, String reason) {
+    return CallStatus.INVALID_ARGUMENT.withDescription("Invalid ticket '" + value + "': " + reason).toRuntimeException();
+  }
+}
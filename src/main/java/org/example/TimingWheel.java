@@ -0,0 +1,174 @@
+package org.example;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel for coarse-grained expirations.
+ *
+ * Deadlines are bucketed into {@code slots} slots of {@code tickMs} each; deadlines
+ * further out than one revolution carry a round count. Scheduling and cancelling
+ * are O(1), and each tick only looks at the entries of a single slot, so sweeping
+ * stays cheap no matter how many entries are outstanding.
+ */
+final class TimingWheel<T> implements AutoCloseable {
+
+  /**
+   * A scheduled expiration that can be cancelled.
+   */
+  final class Timeout {
+    private final T item;
+    private long remainingRounds;
+    private int slot = -1;
+    private Timeout prev;
+    private Timeout next;
+
+    private Timeout(T item) {
+      this.item = item;
+    }
+
+    /** Returns true if the timeout was still pending. */
+    boolean cancel() {
+      synchronized (TimingWheel.this) {
+        if (slot < 0) {
+          return false;
+        }
+        unlink(this);
+        size--;
+        return true;
+      }
+    }
+  }
+
+  private final long tickMs;
+  private final Timeout[] heads;
+  private final int mask;
+  private final Consumer<T> onExpire;
+  private final LongSupplier clock;
+  private final ScheduledExecutorService ticker; // null when ticked by hand
+
+  // Guarded by "this"
+  private long currentTick;
+  private int size;
+
+  TimingWheel(String name, long tickMs, int slots, Consumer<T> onExpire) {
+    this(tickMs, slots, onExpire, System::currentTimeMillis, name);
+  }
+
+  /**
+   * A wheel on {@code clock} (milliseconds) with no ticker thread: it only advances
+   * when {@link #tick} is called.
+   */
+  TimingWheel(long tickMs, int slots, Consumer<T> onExpire, LongSupplier clock) {
+    this(tickMs, slots, onExpire, clock, null);
+  }
+
+  @SuppressWarnings("unchecked")
+  private TimingWheel(long tickMs, int slots, Consumer<T> onExpire, LongSupplier clock, String tickerName) {
+    if (Integer.bitCount(slots) != 1) {
+      throw new IllegalArgumentException("slots must be a power of two: " + slots);
+    }
+    this.tickMs = tickMs;
+    this.heads = (Timeout[]) Array.newInstance(Timeout.class, slots);
+    this.mask = slots - 1;
+    this.onExpire = onExpire;
+    this.clock = clock;
+    this.currentTick = clock.getAsLong() / tickMs;
+    if (tickerName == null) {
+      this.ticker = null;
+    } else {
+      this.ticker = Executors.newSingleThreadScheduledExecutor(new QueryExecutor.NamedThreadFactory(tickerName));
+      ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Schedules {@code item} to expire at {@code deadlineMillis} on the wheel's clock
+   * (the wall clock unless one was given).
+   */
+  synchronized Timeout schedule(T item, long deadlineMillis) {
+    Timeout timeout = new Timeout(item);
+    // Round up so nothing expires early, and never schedule into the slot already processed
+    long deadlineTick = Math.max((deadlineMillis + tickMs - 1) / tickMs, currentTick + 1);
+    long ticks = deadlineTick - currentTick;
+    timeout.remainingRounds = (ticks - 1) / heads.length;
+    link(timeout, (int) (deadlineTick & mask));
+    size++;
+    return timeout;
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /** Expires everything due up to the clock's current time. */
+  void tick() {
+    List<T> expired = new ArrayList<>();
+    synchronized (this) {
+      long nowTick = clock.getAsLong() / tickMs;
+      // Catch up if the ticker fell behind, one slot per elapsed tick
+      while (currentTick < nowTick) {
+        currentTick++;
+        Timeout timeout = heads[(int) (currentTick & mask)];
+        while (timeout != null) {
+          Timeout next = timeout.next;
+          if (timeout.remainingRounds == 0) {
+            unlink(timeout);
+            size--;
+            expired.add(timeout.item);
+          } else {
+            timeout.remainingRounds--;
+          }
+          timeout = next;
+        }
+      }
+    }
+    // Callbacks run outside the lock so they may schedule or cancel other timeouts
+    for (T item : expired) {
+      try {
+        onExpire.accept(item);
+      } catch (RuntimeException e) {
+        Log.error("❌ Error in expiry callback: {}", e.getMessage(), e);
+      }
+    }
+  }
+
+  // Caller holds "this"
+  private void link(Timeout timeout, int slot) {
+    timeout.slot = slot;
+    timeout.prev = null;
+    timeout.next = heads[slot];
+    if (heads[slot] != null) {
+      heads[slot].prev = timeout;
+    }
+    heads[slot] = timeout;
+  }
+
+  // Caller holds "this"
+  private void unlink(Timeout timeout) {
+    if (timeout.prev != null) {
+      timeout.prev.next = timeout.next;
+    } else {
+      heads[timeout.slot] = timeout.next;
+    }
+    if (timeout.next != null) {
+      timeout.next.prev = timeout.prev;
+    }
+    timeout.slot = -1;
+    timeout.prev = null;
+    timeout.next = null;
+  }
+
+  @Override
+  public void close() {
+    if (ticker != null) {
+      ticker.shutdownNow();
+    }
+  }
+}
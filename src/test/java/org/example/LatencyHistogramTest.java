@@ -0,0 +1,116 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+  @Test
+  void emptyHistogramReportsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.valueAtPercentile(99));
+    assertEquals(0, histogram.mean());
+  }
+
+  @Test
+  void smallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 0; value < 16; value++) {
+      histogram.record(value);
+    }
+    assertEquals(7, histogram.valueAtPercentile(50));
+    assertEquals(15, histogram.valueAtPercentile(100));
+  }
+
+  @Test
+  void eachValueIsReportedWithinOneSubBucket() {
+    Random rnd = new Random(42);
+    for (int i = 0; i < 10_000; i++) {
+      long value = 16 + (long) Math.pow(2, rnd.nextDouble() * 40);
+      LatencyHistogram histogram = new LatencyHistogram();
+      histogram.record(value);
+      // A larger value keeps the max from capping the bucket bound of the first
+      histogram.record(value * 4);
+
+      long reported = histogram.valueAtPercentile(50);
+      assertTrue(reported >= value, () -> reported + " < " + value);
+      assertTrue(reported <= value + value / 16, () -> reported + " is more than 1/16 above " + value);
+    }
+  }
+
+  @Test
+  void percentilesOfUniformValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100_000; value++) {
+      histogram.record(value * 1_000);
+    }
+    assertEquals(100_000, histogram.count());
+    assertEquals(100_000_000, histogram.max());
+    assertWithin(50_000_000, histogram.valueAtPercentile(50));
+    assertWithin(90_000_000, histogram.valueAtPercentile(90));
+    assertWithin(99_000_000, histogram.valueAtPercentile(99));
+    assertWithin(99_900_000, histogram.valueAtPercentile(99.9));
+    assertEquals(100_000_000, histogram.valueAtPercentile(100));
+    assertEquals(50_000_500, histogram.mean(), 0.001);
+  }
+
+  @Test
+  void negativeValuesCountAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    assertEquals(1, histogram.count());
+    assertEquals(0, histogram.valueAtPercentile(100));
+  }
+
+  @Test
+  void hugeValuesLandInTheLastBucketWithAnExactMax() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE / 2);
+    assertEquals(Long.MAX_VALUE / 2, histogram.max());
+    assertEquals(Long.MAX_VALUE / 2, histogram.valueAtPercentile(100));
+  }
+
+  @Test
+  void mergeAddsCountsSumAndMax() {
+    LatencyHistogram a = new LatencyHistogram();
+    LatencyHistogram b = new LatencyHistogram();
+    for (long value = 1; value <= 1_000; value++) {
+      a.record(value);
+      b.record(value + 1_000);
+    }
+    a.merge(b);
+    assertEquals(2_000, a.count());
+    assertEquals(2_000, a.max());
+    assertEquals(2_001_000, a.sum());
+    assertWithin(1_000, a.valueAtPercentile(50));
+    // The source is left alone
+    assertEquals(1_000, b.count());
+  }
+
+  @Test
+  void resetClearsEverything() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1_000);
+    histogram.record(2_000);
+    histogram.reset();
+    assertEquals(0, histogram.count());
+    assertEquals(0, histogram.sum());
+    assertEquals(0, histogram.max());
+    assertEquals(0, histogram.valueAtPercentile(50));
+
+    histogram.record(300);
+    assertEquals(1, histogram.count());
+    assertEquals(300, histogram.valueAtPercentile(100));
+  }
+
+  /** Reported percentiles are bucket upper bounds: never below the true value, at most 1/16 above. */
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(actual >= expected && actual <= expected + expected / 16,
+        () -> "expected ~" + expected + " but was " + actual);
+  }
+}
@@ -0,0 +1,58 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServerConfigTest {
+
+  @Test
+  void defaultsApplyWhenUnset() {
+    ServerConfig config = ServerConfig.of(Map.of());
+    assertEquals(60_000, config.queryPartitionMs);
+    assertEquals(500, config.pollMinIntervalMs);
+    assertEquals(8815, config.advertisePort);
+  }
+
+  @Test
+  void zeroIntervalsAndCountsAreRejected() {
+    String[] names = {
+        "flight.query.partitionMs",
+        "flight.query.sweepTickMs",
+        "flight.poll.minIntervalMs",
+        "flight.subscribe.heartbeatMs",
+        "flight.stream.timerThreads",
+        "flight.query.workerThreads",
+        "flight.memory.queryLimitBytes",
+    };
+    for (String name : names) {
+      IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+          () -> ServerConfig.of(Map.of(name, "0")), name);
+      assertTrue(e.getMessage().contains(name), e.getMessage());
+    }
+  }
+
+  @Test
+  void zeroIsAllowedWhereItMeansOff() {
+    ServerConfig config = ServerConfig.of(Map.of("flight.cache.maxBytes", "0", "flight.poll.maxWaitMs", "0"));
+    assertEquals(0, config.cacheMaxBytes);
+    assertEquals(0, config.pollMaxWaitMs);
+  }
+
+  @Test
+  void maxPollIntervalMayNotBeBelowTheMin() {
+    assertThrows(IllegalArgumentException.class,
+        () -> ServerConfig.of(Map.of("flight.poll.minIntervalMs", "1000", "flight.poll.maxIntervalMs", "500")));
+  }
+
+  @Test
+  void malformedValuesAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> ServerConfig.of(Map.of("flight.port", "eighty")));
+    assertThrows(IllegalArgumentException.class, () -> ServerConfig.of(Map.of("flight.query.typeLimits", "a:x")));
+    assertThrows(IllegalArgumentException.class, () -> ServerConfig.of(Map.of("flight.query.typeLimits", "a:0")));
+  }
+}
@@ -0,0 +1,118 @@
+package org.example;
+
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.flight.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketSpecTest {
+
+  @Test
+  void plainNameHasDefaults() {
+    TicketSpec spec = TicketSpec.parse("poll-query-3-result");
+    assertEquals("poll-query-3-result", spec.name);
+    assertEquals(TicketSpec.DEFAULT, spec.rows);
+    assertEquals(TicketSpec.DEFAULT, spec.batchSize);
+    assertEquals(0, spec.offset);
+    assertEquals(TicketSpec.DEFAULT, spec.partitions);
+    assertFalse(spec.isResume());
+    assertNull(spec.compression);
+    assertEquals(1_000, spec.rowsOr(1_000));
+    assertEquals(64, spec.batchSizeOr(64));
+    assertEquals("poll-query-3-result", spec.encode());
+  }
+
+  @Test
+  void allParametersRoundTrip() {
+    String value = "sample?rows=1000&batch=100&offset=500&partitions=4&resumeBatch=3&resumeRow=300&compression=zstd";
+    TicketSpec spec = TicketSpec.parse(value);
+    assertEquals("sample", spec.name);
+    assertEquals(1_000, spec.rows);
+    assertEquals(100, spec.batchSize);
+    assertEquals(500, spec.offset);
+    assertEquals(4, spec.partitions);
+    assertEquals(3, spec.resumeBatch);
+    assertEquals(300, spec.resumeRow);
+    assertEquals("zstd", spec.compression);
+    assertEquals(value, spec.encode());
+    assertEquals(value, TicketSpec.parse(spec.toTicket()).encode());
+  }
+
+  @Test
+  void parametersMayComeInAnyOrder() {
+    TicketSpec spec = TicketSpec.parse("sample?compression=lz4&offset=10&rows=20&");
+    assertEquals("sample?rows=20&offset=10&compression=lz4", spec.encode());
+  }
+
+  @Test
+  void rangeKeepsBatchSizeAndCompressionButDropsPartitionsAndResume() {
+    TicketSpec spec = TicketSpec.parse("sample?rows=1000&batch=100&partitions=4&resumeBatch=1&resumeRow=100&compression=zstd");
+    TicketSpec slice = spec.withRange(250, 250);
+    assertEquals("sample?rows=250&batch=100&offset=250&compression=zstd", slice.encode());
+    assertEquals(slice.encode(), TicketSpec.parse(slice.encode()).encode());
+  }
+
+  @Test
+  void zeroOffsetIsNotEncoded() {
+    assertEquals("sample?rows=10", TicketSpec.parse("sample").withRange(0, 10).encode());
+  }
+
+  @Test
+  void resumeRoundTripsAndAccumulates() {
+    TicketSpec slice = TicketSpec.parse("sample?rows=250&offset=250&compression=lz4");
+    TicketSpec resumed = slice.withResume(2, 128);
+    assertTrue(resumed.isResume());
+    assertEquals("sample?rows=250&offset=250&resumeBatch=2&resumeRow=128&compression=lz4", resumed.encode());
+
+    // A resumed stream that fails again resumes from the sum, as ParallelFetcher does
+    TicketSpec parsed = TicketSpec.parse(resumed.toTicket());
+    TicketSpec again = parsed.withResume(parsed.resumeBatch + 1, parsed.resumeRow + 64);
+    assertEquals(3, again.resumeBatch);
+    assertEquals(192, again.resumeRow);
+    assertEquals(250, again.offset);
+
+    assertEquals(slice.encode(), resumed.withResume(0, 0).encode());
+  }
+
+  @Test
+  void compressionCanBeReplacedOrDropped() {
+    TicketSpec spec = TicketSpec.parse("sample?rows=10&compression=zstd");
+    assertEquals("sample?rows=10&compression=lz4", spec.withCompression("lz4").encode());
+    assertEquals("sample?rows=10", spec.withCompression(null).encode());
+  }
+
+  @Test
+  void ticketBytesAreUtf8() {
+    Ticket ticket = TicketSpec.parse("données?rows=5").toTicket();
+    assertEquals("données?rows=5", new String(ticket.getBytes(), StandardCharsets.UTF_8));
+    assertEquals("données", TicketSpec.parse(ticket).name);
+  }
+
+  @Test
+  void malformedSpecsAreInvalidArgument() {
+    String[] invalid = {
+        "sample?rows=abc",
+        "sample?rows=0&batch=0",
+        "sample?rows=-2",
+        "sample?batch=-5",
+        "sample?offset=-1",
+        "sample?partitions=0",
+        "sample?resumeBatch=-1",
+        "sample?rows=10&resumeRow=11",
+        "sample?compression=snappy",
+        "sample?color=red",
+    };
+    for (String value : invalid) {
+      FlightRuntimeException e = assertThrows(FlightRuntimeException.class, () -> TicketSpec.parse(value), value);
+      assertEquals(FlightStatusCode.INVALID_ARGUMENT, e.status().code(), value);
+    }
+  }
+}
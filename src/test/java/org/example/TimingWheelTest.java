@@ -0,0 +1,149 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+  private static final long TICK_MS = 10;
+  private static final int SLOTS = 8; // one revolution = 80 ms
+
+  private final AtomicLong now = new AtomicLong(1_000);
+  private final List<String> expired = new ArrayList<>();
+  private final TimingWheel<String> wheel = new TimingWheel<>(TICK_MS, SLOTS, expired::add, now::get);
+
+  @Test
+  void slotsMustBeAPowerOfTwo() {
+    assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(TICK_MS, 6, s -> { }, now::get));
+  }
+
+  @Test
+  void neverExpiresEarly() {
+    wheel.schedule("a", 1_005);
+    advanceTo(1_009);
+    assertTrue(expired.isEmpty());
+    advanceTo(1_010);
+    assertEquals(List.of("a"), expired);
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void deadlinesBeyondOneRevolutionWaitOutTheirRounds() {
+    // 3 revolutions and a bit: lands in a slot the wheel passes three times first
+    wheel.schedule("far", 1_250);
+    wheel.schedule("near", 1_020);
+    for (long t = 1_010; t < 1_250; t += TICK_MS) {
+      advanceTo(t);
+      assertFalse(expired.contains("far"), "expired early at " + t);
+    }
+    assertEquals(List.of("near"), expired);
+    advanceTo(1_250);
+    assertEquals(List.of("near", "far"), expired);
+  }
+
+  @Test
+  void deadlinesSharingASlotExpireOnTheirOwnRound() {
+    // 1_040 and 1_120 are one revolution apart, so they share a slot
+    wheel.schedule("second", 1_120);
+    wheel.schedule("first", 1_040);
+    advanceTo(1_040);
+    assertEquals(List.of("first"), expired);
+    advanceTo(1_110);
+    assertEquals(List.of("first"), expired);
+    advanceTo(1_120);
+    assertEquals(List.of("first", "second"), expired);
+  }
+
+  @Test
+  void cancelledTimeoutsNeverExpire() {
+    TimingWheel<String>.Timeout cancelled = wheel.schedule("cancelled", 1_030);
+    TimingWheel<String>.Timeout farCancelled = wheel.schedule("far-cancelled", 1_500);
+    wheel.schedule("kept", 1_030);
+    assertEquals(3, wheel.size());
+
+    assertTrue(cancelled.cancel());
+    assertFalse(cancelled.cancel());
+    advanceTo(1_100);
+    assertTrue(farCancelled.cancel());
+    assertEquals(0, wheel.size());
+
+    advanceTo(2_000);
+    assertEquals(List.of("kept"), expired);
+  }
+
+  @Test
+  void cancelAfterExpiryReturnsFalse() {
+    TimingWheel<String>.Timeout timeout = wheel.schedule("a", 1_010);
+    advanceTo(1_010);
+    assertFalse(timeout.cancel());
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  void pastDeadlinesExpireOnTheNextTick() {
+    wheel.schedule("late", 500);
+    advanceTo(1_000);
+    assertTrue(expired.isEmpty());
+    advanceTo(1_010);
+    assertEquals(List.of("late"), expired);
+  }
+
+  @Test
+  void aLateTickCatchesUpInDeadlineOrder() {
+    wheel.schedule("c", 1_700);
+    wheel.schedule("a", 1_030);
+    wheel.schedule("b", 1_090);
+    wheel.schedule("d", 5_000);
+    advanceTo(2_000);
+    assertEquals(List.of("a", "b", "c"), expired);
+    assertEquals(1, wheel.size());
+  }
+
+  @Test
+  void callbacksMayScheduleMore() {
+    List<String> seen = new ArrayList<>();
+    AtomicReference<TimingWheel<String>> self = new AtomicReference<>();
+    self.set(new TimingWheel<>(TICK_MS, SLOTS, item -> {
+      seen.add(item);
+      if (item.equals("first")) {
+        self.get().schedule("second", now.get() + 20);
+      }
+    }, now::get));
+    self.get().schedule("first", 1_010);
+    now.set(1_010);
+    self.get().tick();
+    assertEquals(List.of("first"), seen);
+    now.set(1_030);
+    self.get().tick();
+    assertEquals(List.of("first", "second"), seen);
+  }
+
+  @Test
+  void aFailingCallbackDoesNotStopTheOthers() {
+    List<String> seen = new ArrayList<>();
+    TimingWheel<String> failing = new TimingWheel<>(TICK_MS, SLOTS, item -> {
+      if (item.equals("bad")) {
+        throw new IllegalStateException("boom");
+      }
+      seen.add(item);
+    }, now::get);
+    failing.schedule("bad", 1_010);
+    failing.schedule("good", 1_010);
+    now.set(1_010);
+    failing.tick();
+    assertEquals(List.of("good"), seen);
+  }
+
+  private void advanceTo(long millis) {
+    now.set(millis);
+    wheel.tick();
+  }
+}
@@ -0,0 +1,89 @@
+#!/bin/bash
+
+# Offline NLB timeout test: two local servers behind NlbProxy (flow-hash balancing,
+# short idle timeout), no AWS account needed. Suitable for CI.
+#
+#   1. Normal requests through the proxy must all succeed.
+#   2. A delayed stream that stays idle longer than the proxy's idle timeout must fail,
+#      the same way sample-delay fails through a real NLB.
+#
+# Usage: ./test-nlb-local.sh [idle-timeout-seconds] [sample-delay-seconds]
+
+set -e
+
+IDLE_TIMEOUT=${1:-5}
+SAMPLE_DELAY=${2:-10}
+PROXY_PORT=9815
+BACKEND_PORTS="8816 8817"
+
+# Colors
+RED='\033[0;31m'
+GREEN='\033[0;32m'
+YELLOW='\033[1;33m'
+BLUE='\033[0;34m'
+NC='\033[0m'
+
+JVM_OPTS="--add-opens=java.base/java.nio=org.apache.arrow.memory.core,ALL-UNNAMED"
+mvn -q compile
+CP="target/classes:$(mvn dependency:build-classpath -Dmdep.outputFile=/dev/stdout -q)"
+RESULTS_DIR="nlb-local-test-$(date +%Y%m%d-%H%M%S)"
+mkdir -p "$RESULTS_DIR"
+
+PIDS=()
+cleanup() {
+    for pid in "${PIDS[@]}"; do
+        kill "$pid" 2>/dev/null || true
+    done
+}
+trap cleanup EXIT
+
+echo -e "${BLUE}🧪 Local NLB Timeout Test${NC}"
+echo "========================="
+echo "  Backends: $BACKEND_PORTS (sample-delay ${SAMPLE_DELAY}s)"
+echo "  Proxy: localhost:$PROXY_PORT (idle timeout ${IDLE_TIMEOUT}s)"
+echo "  Results: $RESULTS_DIR"
+echo ""
+
+BACKENDS=""
+for port in $BACKEND_PORTS; do
+    java $JVM_OPTS -Dflight.port=$port -Dflight.stream.sampleDelayMs=$((SAMPLE_DELAY * 1000)) \
+         -cp "$CP" org.example.Main -server > "$RESULTS_DIR/server-$port.log" 2>&1 &
+    PIDS+=($!)
+    BACKENDS="$BACKENDS --backend localhost:$port"
+done
+
+# reset: RST both sides at the idle timeout, so the client fails fast instead of
+# hanging until it next sends (which is what "silent", the real NLB behaviour, does)
+java -cp "$CP" org.example.NlbProxy --listen $PROXY_PORT $BACKENDS \
+     --idle-timeout "$IDLE_TIMEOUT" --idle-action reset > "$RESULTS_DIR/proxy.log" 2>&1 &
+PIDS+=($!)
+sleep 5
+
+echo -e "${YELLOW}1. Normal requests through the proxy...${NC}"
+java $JVM_OPTS -cp "$CP" org.example.NLBLoadTester --host localhost --port $PROXY_PORT \
+     --threads 4 --duration 10 --results "$RESULTS_DIR/normal" > "$RESULTS_DIR/normal.log" 2>&1
+normal_failed=$(grep -m1 "  Failed:" "$RESULTS_DIR/normal.log" | awk '{print $2}')
+
+echo -e "${YELLOW}2. Delayed stream idle past the proxy timeout...${NC}"
+java $JVM_OPTS -cp "$CP" org.example.NLBLoadTester --host localhost --port $PROXY_PORT \
+     --threads 1 --duration $((SAMPLE_DELAY + 5)) --delay --results "$RESULTS_DIR/delay" > "$RESULTS_DIR/delay.log" 2>&1
+delay_failed=$(grep -m1 "  Failed:" "$RESULTS_DIR/delay.log" | awk '{print $2}')
+
+echo ""
+echo "Proxy: $(tail -1 "$RESULTS_DIR/proxy.log")"
+status=0
+if [ "$normal_failed" = "0" ]; then
+    echo -e "${GREEN}✅ Normal requests: no failures${NC}"
+else
+    echo -e "${RED}❌ Normal requests: $normal_failed failed${NC}"
+    status=1
+fi
+if [ "$SAMPLE_DELAY" -gt "$IDLE_TIMEOUT" ]; then
+    if [ "${delay_failed:-0}" != "0" ]; then
+        echo -e "${GREEN}✅ Delayed stream was cut by the idle timeout, as on a real NLB${NC}"
+    else
+        echo -e "${RED}❌ Delayed stream survived a ${SAMPLE_DELAY}s idle period (timeout ${IDLE_TIMEOUT}s)${NC}"
+        status=1
+    fi
+fi
+exit $status